@@ -0,0 +1,70 @@
+package com.rentals.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set membership in about ten bits per entry at a 1% false positive rate: mightContain() never misses an
+ * added key, and only sometimes answers true for one that was not. Entries cannot be removed, so owners
+ * rebuild the filter to forget them. Safe for concurrent adds and reads.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(long expectedEntries, double falsePositiveRate) {
+        long entries = Math.max(1, expectedEntries);
+        long optimalBits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * Math.log(2)));
+    }
+
+    public void add(String key) {
+        long hash1 = hash(key, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(key, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash1 = hash(key, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(key, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, with a seeded murmur finalizer to spread the bits
+    private static long hash(String key, long seed) {
+        long hash = 0xCBF29CE484222325L ^ seed;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
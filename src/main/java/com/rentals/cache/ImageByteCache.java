@@ -0,0 +1,150 @@
+package com.rentals.cache;
+
+import com.rentals.storage.ImageLocation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bytes of the most requested images, held in direct buffers so that a large budget neither grows the heap
+ * nor adds to garbage collection work. Least recently used entries are evicted first; an image is only
+ * admitted once it has been requested admit-after times, so a burst of one-off requests cannot flush
+ * the popular ones.
+ * Evicted buffers are released when the JVM collects them: -XX:MaxDirectMemorySize must leave room above
+ * the budget.
+ */
+@Component
+public class ImageByteCache {
+
+    // `filename` is the image the bytes are from, which for a variant request may be the original
+    public record CachedImage(String filename, ByteBuffer bytes, long lastModified) {
+    }
+
+    private final long maxBytes;
+    private final int maxObjectBytes;
+    private final int admitAfter;
+    private final int historySize;
+
+    // Access-ordered, so the eldest entry is always the least recently used one
+    private final LinkedHashMap<String, CachedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+    // Request counts of the images not cached yet, the least recently requested forgotten first
+    private final LinkedHashMap<String, Integer> requests = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ImageByteCache(
+            @Value("${rentals.images.cache.max-bytes}") long maxBytes,
+            @Value("${rentals.images.cache.max-object-bytes}") int maxObjectBytes,
+            @Value("${rentals.images.cache.admit-after}") int admitAfter,
+            @Value("${rentals.images.cache.history-size}") int historySize) {
+        this.maxBytes = maxBytes;
+        this.maxObjectBytes = maxObjectBytes;
+        this.admitAfter = admitAfter;
+        this.historySize = historySize;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    // Whether `size` more bytes fit without evicting anything
+    public synchronized boolean hasRoomFor(long size) {
+        return isEnabled() && size <= maxObjectBytes && residentBytes + size <= maxBytes;
+    }
+
+    // A read-only view of the cached bytes for `key`, or null
+    public synchronized CachedImage get(String key) {
+        CachedImage image = images.get(key);
+        if (image == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new CachedImage(image.filename(), image.bytes().duplicate(), image.lastModified());
+    }
+
+    // Counts a miss on `key` and tells whether the image is now requested often enough to be cached
+    public synchronized boolean admit(String key, long size) {
+        if (!isEnabled() || size > maxObjectBytes || size > maxBytes) {
+            return false;
+        }
+        int count = requests.merge(key, 1, Integer::sum);
+        if (requests.size() > historySize) {
+            Iterator<String> eldest = requests.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return count >= admitAfter;
+    }
+
+    // Reads the image into a direct buffer and caches it under `key`. Returns null when it does not fit.
+    public CachedImage load(String key, String filename, ImageLocation location) throws IOException {
+        if (!isEnabled() || location.size() > maxObjectBytes || location.size() > maxBytes) {
+            return null;
+        }
+        // Read outside the lock: a second loader of the same key only wastes a read
+        ByteBuffer bytes = ByteBuffer.allocateDirect((int) location.size());
+        try (FileChannel channel = FileChannel.open(location.file(), StandardOpenOption.READ)) {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, location.offset() + bytes.position()) < 0) {
+                    throw new EOFException("Image " + filename + " is shorter than expected");
+                }
+            }
+        }
+        CachedImage image = new CachedImage(filename, bytes.flip().asReadOnlyBuffer(), location.lastModified());
+        store(key, image);
+        return new CachedImage(filename, image.bytes().duplicate(), image.lastModified());
+    }
+
+    // Drops every entry serving the bytes of `filename`, once the image is deleted from the store
+    public synchronized void evict(String filename) {
+        Iterator<CachedImage> iterator = images.values().iterator();
+        while (iterator.hasNext()) {
+            CachedImage image = iterator.next();
+            if (image.filename().equals(filename)) {
+                iterator.remove();
+                residentBytes -= image.bytes().capacity();
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hit_ratio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictions", evictions);
+        stats.put("entries", images.size());
+        stats.put("resident_bytes", residentBytes);
+        stats.put("max_bytes", maxBytes);
+        return stats;
+    }
+
+    private synchronized void store(String key, CachedImage image) {
+        CachedImage previous = images.put(key, image);
+        if (previous != null) {
+            residentBytes -= previous.bytes().capacity();
+        }
+        residentBytes += image.bytes().capacity();
+        requests.remove(key);
+        Iterator<CachedImage> eldest = images.values().iterator();
+        while (residentBytes > maxBytes && eldest.hasNext()) {
+            CachedImage evicted = eldest.next();
+            eldest.remove();
+            residentBytes -= evicted.bytes().capacity();
+            evictions++;
+        }
+    }
+}
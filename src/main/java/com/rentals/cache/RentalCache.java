@@ -0,0 +1,111 @@
+package com.rentals.cache;
+
+import com.rentals.model.Rental;
+import com.rentals.responses.CacheStatsResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class RentalCache {
+
+    private record Entry<T>(T value, long expiresAt) {
+    }
+
+    private final int maxSize;
+    private final long ttlMillis;
+
+    // Access-ordered, so the eldest entry is always the least recently used one
+    private final LinkedHashMap<Integer, Entry<Rental>> rentals = new LinkedHashMap<>(16, 0.75f, true);
+    private Entry<List<Rental>> catalog;
+
+    // Bumped on every write, so a read that raced with a write never re-populates a stale value
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public RentalCache(
+            @Value("${rentals.cache.max-size}") int maxSize,
+            @Value("${rentals.cache.ttl-seconds}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized Rental get(Integer id) {
+        Entry<Rental> entry = rentals.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            rentals.remove(id);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    public synchronized void putIfFresh(Rental rental, long readGeneration) {
+        if (readGeneration == generation) {
+            store(rental);
+        }
+    }
+
+    public synchronized List<Rental> getAll() {
+        if (catalog == null || catalog.expiresAt() < System.currentTimeMillis()) {
+            if (catalog != null) {
+                catalog = null;
+                evictions++;
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        return catalog.value();
+    }
+
+    public synchronized void putAllIfFresh(List<Rental> all, long readGeneration) {
+        if (readGeneration == generation) {
+            catalog = new Entry<>(List.copyOf(all), System.currentTimeMillis() + ttlMillis);
+        }
+    }
+
+    // Write-through: the saved rental replaces the cached one and the catalog is rebuilt on next read
+    public synchronized void written(Rental rental) {
+        generation++;
+        catalog = null;
+        store(rental);
+    }
+
+    // Rows were added behind the cache's back (bulk import): only the catalog is affected
+    public synchronized void catalogChanged() {
+        generation++;
+        catalog = null;
+    }
+
+    public synchronized CacheStatsResponse stats() {
+        return new CacheStatsResponse(hits, misses, evictions, rentals.size());
+    }
+
+    private void store(Rental rental) {
+        rentals.put(rental.getId(), new Entry<>(rental, System.currentTimeMillis() + ttlMillis));
+        if (rentals.size() > maxSize) {
+            Iterator<Map.Entry<Integer, Entry<Rental>>> eldest = rentals.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.rentals.configuration;
+
+import com.rentals.storage.FilesystemImageStore;
+import com.rentals.storage.ImagePathResolver;
+import com.rentals.storage.ImageStore;
+import com.rentals.storage.SegmentImageStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+
+@Configuration
+public class ImageStoreConfiguration {
+
+    // The store every image consumer is given, selected with rentals.images.store
+    @Bean
+    @Primary
+    ImageStore imageStore(
+            @Value("${rentals.images.store}") String store,
+            ImagePathResolver imagePathResolver,
+            FilesystemImageStore filesystemImageStore,
+            @Value("${rentals.images.segment.size-bytes}") int segmentBytes,
+            @Value("${rentals.images.segment.max-object-bytes}") int maxObjectBytes,
+            @Value("${rentals.images.segment.compaction-ratio}") double compactionRatio,
+            @Value("${rentals.images.segment.compaction-interval-minutes}") long compactionIntervalMinutes
+    ) throws IOException {
+        return switch (store) {
+            case "filesystem" -> filesystemImageStore;
+            // Large images stay one file each, where sendfile and the page cache serve them best
+            case "segment" -> new SegmentImageStore(imagePathResolver.getSegmentDir(), filesystemImageStore,
+                    segmentBytes, maxObjectBytes, compactionRatio, compactionIntervalMinutes);
+            default -> throw new IllegalArgumentException("Unknown image store: " + store);
+        };
+    }
+}
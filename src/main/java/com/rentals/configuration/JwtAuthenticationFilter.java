@@ -1,9 +1,12 @@
 package com.rentals.configuration;
 import com.rentals.services.JwtService;
+import com.rentals.services.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,12 +23,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
+
+    // When false, the user is loaded from the database on every request, as before tokens carried the user claims
+    @Value("${security.jwt.stateless-principal}")
+    private boolean statelessPrincipal;
 
     public JwtAuthenticationFilter(
             JwtService jwtService,
-            UserDetailsService userDetailsService) {
+            UserDetailsService userDetailsService,
+            TokenRevocationService tokenRevocationService) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
@@ -36,7 +46,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     ) throws ServletException, IOException {
         final String requestPath = request.getRequestURI();
 
-        if (requestPath.startsWith("/api/auth/register") || requestPath.startsWith("/api/auth/login") || requestPath.startsWith("/swagger-ui") || request.getRequestURI().startsWith("/v3/api-docs") || requestPath.startsWith("/api/rentals/images/")){
+        if (requestPath.startsWith("/api/auth/register") || requestPath.startsWith("/api/auth/login") || requestPath.startsWith("/api/auth/refresh") || requestPath.startsWith("/swagger-ui") || request.getRequestURI().startsWith("/v3/api-docs") || requestPath.startsWith("/api/rentals/images/")){
             filterChain.doFilter(request, response);
             return;
         }
@@ -52,12 +62,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String userEmail;
 
         try {
-            userEmail = jwtService.extractUsername(jwt);
+            // Signature and expiration are checked here, once per token thanks to the verified-token cache
+            Claims claims = jwtService.validate(jwt);
+            userEmail = claims.getSubject();
+
+            // Checked on every request, cached or not: a Bloom filter lookup for tokens that were never revoked
+            if (!jwtService.isAccessToken(claims) || (claims.getId() != null && tokenRevocationService.isRevoked(claims.getId()))) {
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid JWT token");
+                return;
+            }
 
             if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+                // Built from the verified claims alone when possible: no database round trip
+                UserDetails userDetails = statelessPrincipal ? jwtService.toPrincipal(claims) : null;
+                if (userDetails == null) {
+                    userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+                }
 
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (userEmail.equals(userDetails.getUsername())) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
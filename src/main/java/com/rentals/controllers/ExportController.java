@@ -0,0 +1,127 @@
+package com.rentals.controllers;
+
+import com.rentals.exceptions.UnauthorizedException;
+import com.rentals.model.AuthenticatedUser;
+import com.rentals.services.ExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/export")
+@Tag(name = "Data export", description = "Bulk exports of rentals and messages for analytics")
+public class ExportController {
+
+    private interface Exporter {
+        void export(ExportService.Format format, LocalDateTime updatedSince, OutputStream output) throws IOException;
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportController.class);
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @Operation(summary = "Export rentals", description = "Stream every rental, or only those updated since the given date, as NDJSON or CSV. Gzipped when the client accepts it.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rentals exported successfully"),
+            @ApiResponse(responseCode = "400", description = "Unknown format", content = @Content),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/rentals")
+    public ResponseEntity<StreamingResponseBody> exportRentals(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince,
+            HttpServletRequest request) {
+        return stream(format, updatedSince, request, exportService::exportRentals);
+    }
+
+    @Operation(summary = "Export messages", description = "Stream the messages the user sent or received on their rentals, or only those updated since the given date, as NDJSON or CSV. Gzipped when the client accepts it.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Messages exported successfully"),
+            @ApiResponse(responseCode = "400", description = "Unknown format", content = @Content),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/messages")
+    public ResponseEntity<StreamingResponseBody> exportMessages(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince,
+            HttpServletRequest request) {
+        AuthenticatedUser user = authenticatedUser();
+        return stream(format, updatedSince, request,
+                (exportFormat, since, output) -> exportService.exportMessages(user.id(), exportFormat, since, output));
+    }
+
+    private AuthenticatedUser authenticatedUser() {
+        AuthenticatedUser user = AuthenticatedUser.from(SecurityContextHolder.getContext().getAuthentication());
+        if (user == null) {
+            throw new UnauthorizedException("User not authenticated");
+        }
+        return user;
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String format, LocalDateTime updatedSince, HttpServletRequest request, Exporter exporter) {
+        ExportService.Format exportFormat;
+        try {
+            exportFormat = ExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown export format: " + format + ". Use ndjson or csv.");
+        }
+
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                if (gzip) {
+                    GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, 8192);
+                    exporter.export(exportFormat, updatedSince, gzipStream);
+                    // Only a complete export gets its gzip trailer
+                    gzipStream.finish();
+                } else {
+                    exporter.export(exportFormat, updatedSince, outputStream);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Export interrupted: {}", e.getMessage());
+                // Rethrown so the container aborts the connection instead of ending the chunked body:
+                // a truncated export must not look like a complete one
+                throw e;
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(exportFormat == ExportService.Format.CSV
+                        ? new MediaType("text", "csv")
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .headers(headers -> {
+                    if (gzip) {
+                        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    }
+                })
+                .body(body);
+    }
+}
@@ -4,6 +4,7 @@ import com.rentals.exceptions.UnauthorizedException;
 import com.rentals.exceptions.NotFoundException;
 import com.rentals.model.User;
 import com.rentals.dto.auth.LoginUserDto;
+import com.rentals.dto.auth.RefreshTokenDto;
 import com.rentals.dto.auth.RegisterUserDto;
 import com.rentals.responses.ErrorResponse;
 import com.rentals.responses.LoginResponse;
@@ -20,12 +21,14 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -53,7 +56,7 @@ public class LoginController {
     @PostMapping("/login")
     @Operation(
             summary = "Authenticate user",
-            description = "Authenticate the user by email and password and return a JWT token."
+            description = "Authenticate the user by email and password and return a short-lived access token with a refresh token."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -75,13 +78,59 @@ public class LoginController {
             throw new UnauthorizedException("Invalid email or password.");
         }
 
-        String jwtToken = jwtService.generateToken(authenticatedUser);
+        return ResponseEntity.ok(tokenPair(authenticatedUser));
+    }
 
-        LoginResponse loginResponse = new LoginResponse()
-                .setToken(jwtToken)
-                .setExpiresIn(jwtService.getExpirationTime());
+    @PostMapping("/refresh")
+    @Operation(
+            summary = "Refresh tokens",
+            description = "Exchange a refresh token for a new access token and refresh token. A refresh token can only be used once."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Tokens refreshed successfully",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = LoginResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Refresh token invalid, expired, already used or revoked",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    public ResponseEntity<LoginResponse> refresh(@Valid @RequestBody RefreshTokenDto refreshTokenDto) {
+        User user = authenticationService.refresh(refreshTokenDto.getRefreshToken());
+        return ResponseEntity.ok(tokenPair(user));
+    }
+
+    @PostMapping("/logout")
+    @Operation(
+            summary = "Log out",
+            description = "Revoke the access token of the request and, when given, the refresh token issued with it."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Tokens revoked"),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Unauthorized: Authentication token was either missing, invalid or expired.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    public ResponseEntity<Void> logout(
+            @RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+            @RequestBody(required = false) RefreshTokenDto refreshTokenDto) {
+        // The filter already checked the header
+        authenticationService.logout(authorization.substring("Bearer ".length()),
+                refreshTokenDto != null ? refreshTokenDto.getRefreshToken() : null);
+        return ResponseEntity.noContent().build();
+    }
 
-        return ResponseEntity.ok(loginResponse);
+    private LoginResponse tokenPair(User user) {
+        return new LoginResponse()
+                .setToken(jwtService.generateToken(user))
+                .setExpiresIn(jwtService.getExpirationTime())
+                .setRefreshToken(jwtService.generateRefreshToken(user))
+                .setRefreshExpiresIn(jwtService.getRefreshExpirationTime());
     }
 
     @PostMapping("/register")
@@ -125,7 +174,9 @@ public class LoginController {
             return ResponseEntity.ok(Map.of(
                     "user", userResponse,
                     "token", jwtToken,
-                    "expiresIn", jwtService.getExpirationTime()
+                    "expiresIn", jwtService.getExpirationTime(),
+                    "refreshToken", jwtService.generateRefreshToken(registeredUser),
+                    "refreshExpiresIn", jwtService.getRefreshExpirationTime()
             ));
 
         } catch (Exception e) {
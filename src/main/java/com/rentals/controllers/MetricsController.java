@@ -0,0 +1,154 @@
+package com.rentals.controllers;
+
+import com.rentals.cache.ImageByteCache;
+import com.rentals.cache.RentalCache;
+import com.rentals.responses.CacheStatsResponse;
+import com.rentals.services.ImageGarbageCollector;
+import com.rentals.services.ImageIngestionService;
+import com.rentals.services.JwtService;
+import com.rentals.services.TokenRevocationService;
+import com.rentals.services.RentalChangeFeedService;
+import com.rentals.storage.ImageLayoutMigrationService;
+import com.rentals.storage.ImageStore;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+@Tag(name = "Metrics", description = "Runtime counters used to size the in-process caches")
+public class MetricsController {
+
+    private final RentalCache rentalCache;
+    private final RentalChangeFeedService rentalChangeFeedService;
+
+    private final ImageIngestionService imageIngestionService;
+    private final ImageLayoutMigrationService imageLayoutMigrationService;
+    private final ImageGarbageCollector imageGarbageCollector;
+    private final ImageStore imageStore;
+    private final ImageByteCache imageByteCache;
+    private final JwtService jwtService;
+    private final TokenRevocationService tokenRevocationService;
+
+    public MetricsController(
+            RentalCache rentalCache,
+            RentalChangeFeedService rentalChangeFeedService,
+            ImageIngestionService imageIngestionService,
+            ImageLayoutMigrationService imageLayoutMigrationService,
+            ImageGarbageCollector imageGarbageCollector,
+            ImageStore imageStore,
+            ImageByteCache imageByteCache,
+            JwtService jwtService,
+            TokenRevocationService tokenRevocationService
+    ) {
+        this.rentalCache = rentalCache;
+        this.rentalChangeFeedService = rentalChangeFeedService;
+        this.imageIngestionService = imageIngestionService;
+        this.imageLayoutMigrationService = imageLayoutMigrationService;
+        this.imageGarbageCollector = imageGarbageCollector;
+        this.imageStore = imageStore;
+        this.imageByteCache = imageByteCache;
+        this.jwtService = jwtService;
+        this.tokenRevocationService = tokenRevocationService;
+    }
+
+    @Operation(summary = "Rental cache statistics", description = "Hits, misses, evictions and current size of the rental cache.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/rentals-cache")
+    public CacheStatsResponse getRentalCacheStats() {
+        return rentalCache.stats();
+    }
+
+    @Operation(summary = "Change feed subscribers", description = "Number of clients currently subscribed to the rentals change feed.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Subscriber count retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/rentals-feed")
+    public Map<String, Integer> getChangeFeedStats() {
+        return Map.of("subscribers", rentalChangeFeedService.getSubscriberCount());
+    }
+
+    @Operation(summary = "Picture ingestion queue", description = "Uploads waiting for or being processed by the ingestion workers, and the limit above which uploads are refused.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Queue statistics retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/image-ingestion")
+    public Map<String, Integer> getImageIngestionStats() {
+        return Map.of(
+                "pending", imageIngestionService.getPendingCount(),
+                "capacity", imageIngestionService.getCapacity()
+        );
+    }
+
+    @Operation(summary = "Image layout migration", description = "Progress of the move of images from the flat uploads directory to the sharded layout.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Migration status retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/image-layout")
+    public Map<String, Object> getImageLayoutMigrationStatus() {
+        return imageLayoutMigrationService.status();
+    }
+
+    @Operation(summary = "Orphaned image collection", description = "Files scanned and deleted, and bytes reclaimed, by the orphaned image collector since startup.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Collector statistics retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/image-gc")
+    public Map<String, Object> getImageGarbageCollectorStats() {
+        return imageGarbageCollector.stats();
+    }
+
+    @Operation(summary = "Image store", description = "Backend holding the stored images and its occupancy: segment count, live and dead bytes for the packed segment store.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Store statistics retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/image-store")
+    public Map<String, Object> getImageStoreStats() {
+        return imageStore.stats();
+    }
+
+    @Operation(summary = "Image cache statistics", description = "Hit ratio, evictions and resident bytes of the off-heap image cache.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/image-cache")
+    public Map<String, Object> getImageCacheStats() {
+        return imageByteCache.stats();
+    }
+
+    @Operation(summary = "Verified token cache", description = "Hits, misses, evictions and current size of the cache of verified JWTs.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/jwt-cache")
+    public CacheStatsResponse getJwtCacheStats() {
+        return jwtService.cacheStats();
+    }
+
+    @Operation(summary = "Token revocation list", description = "Revoked tokens held in memory, size of their Bloom filter, and how many checks it answered alone.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/token-revocation")
+    public Map<String, Object> getTokenRevocationStats() {
+        return tokenRevocationService.stats();
+    }
+}
@@ -1,38 +1,58 @@
 package com.rentals.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rentals.dto.rentals.RentalDto;
+import com.rentals.dto.rentals.RentalFilterDto;
 import com.rentals.exceptions.NotFoundException;
 import com.rentals.exceptions.UnauthorizedException;
+import com.rentals.model.AuthenticatedUser;
+import com.rentals.model.PictureStatus;
 import com.rentals.model.Rental;
-import com.rentals.model.User;
-import com.rentals.responses.RentalResponse;
+import com.rentals.responses.ImportReportResponse;
+import com.rentals.responses.RentalChangesResponse;
+import com.rentals.responses.RentalPageResponse;
+import com.rentals.responses.RentalStatisticsResponse;
+import com.rentals.services.ImageIngestionService;
+import com.rentals.services.ImageServingService;
+import com.rentals.services.ImageVariantService;
+import com.rentals.services.RentalChangeFeedService;
+import com.rentals.services.RentalChanges;
+import com.rentals.services.RentalImportService;
+import com.rentals.services.RentalMapper;
+import com.rentals.services.RentalPage;
+import com.rentals.services.RentalSearchService;
 import com.rentals.services.RentalService;
+import com.rentals.services.RentalSnapshotService;
+import com.rentals.services.RentalStatisticsService;
+import com.rentals.services.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.media.Content;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/rentals")
@@ -41,86 +61,238 @@ public class RentalController {
 
     private static final Logger logger = LoggerFactory.getLogger(RentalController.class);
     private final RentalService rentalService;
-    private final Path uploadDir = Paths.get("uploads");
-
-    @Value("${base.url}")
-    private String baseUrl;
-
-    private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
-
-    public RentalController(RentalService rentalService) {
+    private final RentalMapper rentalMapper;
+    private final ObjectMapper objectMapper;
+    private final RentalSnapshotService rentalSnapshotService;
+    private final RentalSearchService rentalSearchService;
+    private final RentalImportService rentalImportService;
+    private final RentalStatisticsService rentalStatisticsService;
+    private final RentalChangeFeedService rentalChangeFeedService;
+    private final ImageIngestionService imageIngestionService;
+    private final ImageVariantService imageVariantService;
+    private final ImageServingService imageServingService;
+    private final UserService userService;
+
+    public RentalController(
+            RentalService rentalService,
+            RentalMapper rentalMapper,
+            ObjectMapper objectMapper,
+            RentalSnapshotService rentalSnapshotService,
+            RentalSearchService rentalSearchService,
+            RentalImportService rentalImportService,
+            RentalStatisticsService rentalStatisticsService,
+            RentalChangeFeedService rentalChangeFeedService,
+            ImageIngestionService imageIngestionService,
+            ImageVariantService imageVariantService,
+            ImageServingService imageServingService,
+            UserService userService
+    ) {
         this.rentalService = rentalService;
+        this.rentalMapper = rentalMapper;
+        this.objectMapper = objectMapper;
+        this.rentalSnapshotService = rentalSnapshotService;
+        this.rentalSearchService = rentalSearchService;
+        this.rentalImportService = rentalImportService;
+        this.rentalStatisticsService = rentalStatisticsService;
+        this.rentalChangeFeedService = rentalChangeFeedService;
+        this.imageIngestionService = imageIngestionService;
+        this.imageVariantService = imageVariantService;
+        this.imageServingService = imageServingService;
+        this.userService = userService;
     }
 
-    @Operation(summary = "Get all rentals", description = "Retrieve a list of all rentals with details.")
+    @Operation(summary = "Get all rentals", description = "Retrieve a page of rentals, optionally filtered by price and surface. Use the returned next_cursor to fetch the following page, and fields (e.g. fields=id,name,price,picture) to only select and return some fields.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "List of rentals retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or limit", content = @Content),
             @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
     })
     @GetMapping
-    public ResponseEntity<Map<String, List<RentalResponse>>> getAllRentals() {
-        List<Rental> rentals = rentalService.findAllRentals();
-        List<RentalResponse> response = rentals.stream().map(rental -> new RentalResponse(
-                rental.getId(),
-                rental.getName(),
-                rental.getSurface(),
-                rental.getPrice(),
-                rental.getPicture(),
-                rental.getDescription(),
-                rental.getOwner().getId(),
-                rental.getCreatedAt() != null ? rental.getCreatedAt().format(dateFormatter) : null,
-                rental.getUpdatedAt() != null ? rental.getUpdatedAt().format(dateFormatter) : null
-        )).toList();
+    public ResponseEntity<RentalPageResponse<?>> getAllRentals(
+            @ModelAttribute RentalFilterDto filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            HttpServletRequest request,
+            WebRequest webRequest) {
+        List<String> selectedFields = rentalMapper.parseFields(fields);
+        String query = request.getQueryString() == null ? "" : request.getQueryString();
+        String eTag = "\"" + rentalService.getCatalogVersion() + "-" + Integer.toHexString(query.hashCode()) + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
+
+        RentalPageResponse<?> body;
+        if (selectedFields == null) {
+            RentalPage<Rental> page = rentalService.findRentalsPage(filter, cursor, limit);
+            body = new RentalPageResponse<>(page.rentals().stream().map(rentalMapper::toResponse).toList(), page.nextCursor());
+        } else {
+            RentalPage<Object[]> page = rentalService.findRentalsPageProjection(filter, cursor, limit, rentalMapper.toPaths(selectedFields));
+            body = new RentalPageResponse<>(page.rentals().stream().map(row -> rentalMapper.toSparseResponse(selectedFields, row)).toList(), page.nextCursor());
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(body);
+    }
+
+    @Operation(summary = "Get the whole catalog", description = "Return every rental as JSON. Served from a pre-serialized snapshot (gzip when accepted), or streamed row by row when no snapshot is available. Intended for sync jobs.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rentals streamed successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> streamAllRentals(HttpServletRequest request, WebRequest webRequest) {
+        RentalSnapshotService.Snapshot snapshot = rentalSnapshotService.current();
+        if (snapshot != null) {
+            return serveSnapshot(snapshot, request, webRequest);
+        }
+
+        String eTag = "\"" + rentalService.getCatalogVersion() + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                // A failure mid-stream must leave invalid JSON behind, not a well-formed truncated catalog:
+                // the end tokens are only written once every rental has been
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("rentals");
+                rentalService.streamAllRentals(rental -> {
+                    try {
+                        objectMapper.writeValue(generator, rentalMapper.toResponse(rental));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+                generator.writeEndObject();
+            } catch (UncheckedIOException e) {
+                logger.warn("Rentals stream interrupted: {}", e.getMessage());
+            }
+        };
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @Operation(summary = "Search rentals", description = "Full-text search over rental names and descriptions, best matches first.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Matching rentals retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Missing query or invalid limit", content = @Content),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, List<?>>> searchRentals(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        List<String> selectedFields = rentalMapper.parseFields(fields);
+        if (q.isBlank()) {
+            throw new IllegalArgumentException("The search query is required.");
+        }
+        List<Rental> rentals = rentalService.findRentalsByIds(rentalSearchService.search(q, rentalService.pageSize(limit)));
+        List<?> response = selectedFields == null
+                ? rentals.stream().map(rentalMapper::toResponse).toList()
+                : rentals.stream().map(rental -> rentalMapper.toSparseResponse(rental, selectedFields)).toList();
         return ResponseEntity.ok(Map.of("rentals", response));
     }
 
-    @Operation(summary = "Get rental by ID", description = "Retrieve a rental by its unique ID.")
+    @Operation(summary = "Subscribe to rental changes", description = "Server-Sent Events feed pushing a 'created' or 'updated' event with the rental for every write, and one 'imported' event with the count and ids of the rentals of each import batch. Reconnect with the Last-Event-ID header to resume; a 'reset' event means the gap is too old and the list must be reloaded.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Subscribed to the change feed"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return rentalChangeFeedService.subscribe(lastEventId);
+    }
+
+    @Operation(summary = "Get rental changes", description = "Delta sync: rentals created or modified after the given change sequence, oldest first. Start with since=0, then pass the returned next_since; keep calling while has_more is true.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Changes retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit", content = @Content),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/changes")
+    public ResponseEntity<RentalChangesResponse> getChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(required = false) Integer limit) {
+        RentalChanges changes = rentalService.findChangesSince(since, limit);
+        return ResponseEntity.ok(new RentalChangesResponse(
+                changes.rentals().stream().map(rentalMapper::toResponse).toList(),
+                changes.nextSince(),
+                changes.hasMore()
+        ));
+    }
+
+    @Operation(summary = "Get catalog statistics", description = "Count, price, price per m² and surface distributions (quantiles within 1%) and a surface histogram over the whole catalog.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @GetMapping("/statistics")
+    public ResponseEntity<RentalStatisticsResponse> getStatistics() {
+        return ResponseEntity.ok(rentalStatisticsService.getStatistics());
+    }
+
+    @Operation(summary = "Get rental by ID", description = "Retrieve a rental by its unique ID. Use fields to only return some fields.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Rental retrieved successfully"),
             @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
     })
     @GetMapping("/{id}")
-    public ResponseEntity<RentalResponse> getRentalById(@PathVariable Integer id) {
+    public ResponseEntity<?> getRentalById(
+            @PathVariable Integer id,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
+        List<String> selectedFields = rentalMapper.parseFields(fields);
         Rental rental = rentalService.findRentalById(id);
         if (rental == null) {
             throw new NotFoundException("Rental with ID " + id + " not found");
         }
-        RentalResponse response = new RentalResponse(
-                rental.getId(),
-                rental.getName(),
-                rental.getSurface(),
-                rental.getPrice(),
-                rental.getPicture(),
-                rental.getDescription(),
-                rental.getOwner().getId(),
-                rental.getCreatedAt() != null ? rental.getCreatedAt().format(dateFormatter) : null,
-                rental.getUpdatedAt() != null ? rental.getUpdatedAt().format(dateFormatter) : null
-        );
-        return ResponseEntity.ok(response);
+
+        String eTag = rentalETag(rental, selectedFields);
+        if (webRequest.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(selectedFields == null ? rentalMapper.toResponse(rental) : rentalMapper.toSparseResponse(rental, selectedFields));
     }
 
 
-    @Operation(summary = "Retrieve an image", description = "Fetch an image by its filename.")
+    @Operation(summary = "Retrieve an image", description = "Fetch an image by its filename. Use size=thumb or size=medium to get a downscaled JPEG; pictures already smaller than the requested size are returned as is. Supports single byte ranges and If-None-Match/If-Modified-Since; content-addressed images are cacheable forever.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Image retrieved successfully"),
+            @ApiResponse(responseCode = "206", description = "Requested byte range returned", content = @Content),
+            @ApiResponse(responseCode = "304", description = "Image not modified", content = @Content),
+            @ApiResponse(responseCode = "416", description = "Range not satisfiable", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Unknown size", content = @Content),
             @ApiResponse(responseCode = "404", description = "Image not found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
 
     @GetMapping("/images/{filename:.+}")
-    public ResponseEntity<Resource> getImage(@PathVariable String filename) {
+    public void getImage(
+            @PathVariable String filename,
+            @RequestParam(defaultValue = ImageVariantService.FULL) String size,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        imageVariantService.checkSize(size);
         try {
-            Path filePath = uploadDir.resolve(filename).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (!resource.exists() || !resource.isReadable()) {
-                throw new NotFoundException("Image " + filename + " not found");
-            }
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.IMAGE_JPEG)
-                    .body(resource);
+            imageServingService.serve(imageVariantService.candidates(filename, size), request, response);
         } catch (IOException e) {
+            if (response.isCommitted()) {
+                // Usually the client going away in the middle of the transfer
+                logger.debug("Image transfer interrupted: {}", e.getMessage());
+                return;
+            }
             logger.error("Error fetching image: {}", e.getMessage(), e);
             throw new RuntimeException("Internal error while fetching image");
         }
@@ -134,42 +306,34 @@ public class RentalController {
     })
     @PostMapping
     public ResponseEntity<Map<String, String>> createRental(@ModelAttribute RentalDto rentalDTO) {
-        try {
-            String pictureUrl = null;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        AuthenticatedUser authenticatedUser = AuthenticatedUser.from(authentication);
+        if (authenticatedUser == null) {
+            throw new UnauthorizedException("User not authenticated");
+        }
 
+        try {
+            // The picture is only spooled here, it is stored by the ingestion workers once the rental exists
+            String uploadId = null;
             if (rentalDTO.getPicture() != null && !rentalDTO.getPicture().isEmpty()) {
-                if (Files.notExists(uploadDir)) {
-                    Files.createDirectories(uploadDir);
-                }
-
-                String originalFilename = rentalDTO.getPicture().getOriginalFilename();
-                assert originalFilename != null;
-                String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                String uniqueFilename = UUID.randomUUID() + extension;
-
-                Path imagePath = uploadDir.resolve(uniqueFilename);
-
-                Files.copy(rentalDTO.getPicture().getInputStream(), imagePath, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-
-                pictureUrl = baseUrl + "/api/rentals/images/" + uniqueFilename;
-            }
-
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            if (authentication == null || !(authentication.getPrincipal() instanceof User authenticatedUser)) {
-                throw new UnauthorizedException("User not authenticated");
+                uploadId = imageIngestionService.spool(rentalDTO.getPicture());
             }
 
             Rental rental = new Rental();
             rental.setName(rentalDTO.getName());
             rental.setSurface(rentalDTO.getSurface());
             rental.setPrice(rentalDTO.getPrice());
-            rental.setPicture(pictureUrl);
             rental.setDescription(rentalDTO.getDescription());
-            rental.setOwner(authenticatedUser);
+            // A reference is enough to write the foreign key
+            rental.setOwner(userService.getReference(authenticatedUser.id()));
             rental.setCreatedAt(LocalDateTime.now());
             rental.setUpdatedAt(LocalDateTime.now());
+            if (uploadId != null) {
+                rental.setPendingPicture(uploadId);
+                rental.setPictureStatus(PictureStatus.PENDING);
+            }
 
-            rentalService.createRental(rental);
+            saveWithPicture(rental, uploadId, true);
 
             Map<String, String> response = Map.of("message", "Rental created successfully");
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
@@ -181,6 +345,32 @@ public class RentalController {
     }
 
 
+    @Operation(summary = "Import rentals in bulk", description = "Create rentals from an NDJSON (one JSON object per line) or CSV (with a name,surface,price,description,picture header) body. Rows are validated one by one and inserted in batches; invalid rows are reported without stopping the import.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import completed, see the report for rejected rows"),
+            @ApiResponse(responseCode = "400", description = "Invalid CSV header", content = @Content),
+            @ApiResponse(responseCode = "401", description = "Unauthorized: Authentication token was either missing, invalid or expired.", content = @Content)
+    })
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<ImportReportResponse> importRentals(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        AuthenticatedUser authenticatedUser = AuthenticatedUser.from(authentication);
+        if (authenticatedUser == null) {
+            throw new UnauthorizedException("User not authenticated");
+        }
+
+        RentalImportService.Format format = request.getContentType().startsWith("text/csv")
+                ? RentalImportService.Format.CSV
+                : RentalImportService.Format.NDJSON;
+        try {
+            return ResponseEntity.ok(rentalImportService.importRentals(request.getInputStream(), format, authenticatedUser.id()));
+        } catch (IOException e) {
+            logger.error("Error while reading import body: {}", e.getMessage(), e);
+            throw new RuntimeException("Error while reading import body");
+        }
+    }
+
+
     @Operation(summary = "Update a rental", description = "Update the details of an existing rental by his id.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Rental updated successfully"),
@@ -191,7 +381,7 @@ public class RentalController {
             @PathVariable Integer id,
             @ModelAttribute RentalDto rentalDTO) {
         try {
-            Rental updateRental = rentalService.findRentalById(id);
+            Rental updateRental = rentalService.findRentalForUpdate(id);
             if (updateRental == null) {
                 throw new NotFoundException("Rental with ID " + id + " not found");
             }
@@ -202,25 +392,15 @@ public class RentalController {
             updateRental.setDescription(rentalDTO.getDescription());
             updateRental.setUpdatedAt(LocalDateTime.now());
 
+            String uploadId = null;
             if (rentalDTO.getPicture() != null && !rentalDTO.getPicture().isEmpty()) {
-                if (Files.notExists(uploadDir)) {
-                    Files.createDirectories(uploadDir);
-                }
-
-                String originalFilename = rentalDTO.getPicture().getOriginalFilename();
-                assert originalFilename != null;
-                String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                String uniqueFilename = UUID.randomUUID() + extension;
-
-                Path imagePath = uploadDir.resolve(uniqueFilename);
-
-                Files.copy(rentalDTO.getPicture().getInputStream(), imagePath, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-
-                String pictureUrl = baseUrl + "/api/rentals/images/" + uniqueFilename;
-                updateRental.setPicture(pictureUrl);
+                uploadId = imageIngestionService.spool(rentalDTO.getPicture());
+                // The current picture stays visible until the new one is ready
+                updateRental.setPendingPicture(uploadId);
+                updateRental.setPictureStatus(PictureStatus.PENDING);
             }
 
-            rentalService.updateRental(updateRental);
+            saveWithPicture(updateRental, uploadId, false);
 
             Map<String, String> response = Map.of("message", "Rental updated successfully");
             return ResponseEntity.status(HttpStatus.OK).body(response);
@@ -230,4 +410,64 @@ public class RentalController {
         }
     }
 
+    private void saveWithPicture(Rental rental, String uploadId, boolean created) {
+        try {
+            if (created) {
+                rentalService.createRental(rental);
+            } else {
+                rentalService.updateRental(rental);
+            }
+        } catch (RuntimeException e) {
+            if (uploadId != null) {
+                imageIngestionService.discard(uploadId);
+            }
+            throw e;
+        }
+        if (uploadId != null) {
+            imageIngestionService.submit(rental.getId(), uploadId);
+        }
+    }
+
+    private ResponseEntity<?> serveSnapshot(RentalSnapshotService.Snapshot snapshot, HttpServletRequest request, WebRequest webRequest) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = snapshot.gzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        // Each content-coding is a different representation, so it needs its own strong validator
+        String eTag = "\"" + snapshot.version() + (gzip ? "-gzip" : "") + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .headers(headers -> {
+                    if (gzip) {
+                        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    }
+                })
+                .body(gzip ? snapshot.gzip() : snapshot.json());
+    }
+
+    // A sparse representation is a different entity body, so it gets its own tag
+    private String rentalETag(Rental rental, List<String> fields) {
+        long updatedAt = rental.getUpdatedAt() == null ? 0
+                : rental.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        String variant = fields == null ? "" : "-" + Integer.toHexString(fields.hashCode());
+        return "\"" + rental.getId() + "-" + Long.toHexString(updatedAt) + variant + "\"";
+    }
+
+    // Cache-Control: no-cache lets clients keep the payload and revalidate it with If-None-Match
+    private <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .build();
+    }
+
 }
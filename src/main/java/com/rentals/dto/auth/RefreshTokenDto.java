@@ -0,0 +1,17 @@
+package com.rentals.dto.auth;
+
+import jakarta.validation.constraints.NotBlank;
+
+public class RefreshTokenDto {
+
+    @NotBlank(message = "Le refresh token est obligatoire")
+    private String refreshToken;
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
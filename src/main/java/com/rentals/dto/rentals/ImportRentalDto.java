@@ -0,0 +1,71 @@
+package com.rentals.dto.rentals;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
+import java.math.BigDecimal;
+
+public class ImportRentalDto {
+
+    @NotBlank(message = "Name is required")
+    @Size(max = 255, message = "Name cannot exceed 255 characters")
+    private String name;
+
+    @NotNull(message = "Surface is required")
+    @Positive(message = "Surface must be positive")
+    private BigDecimal surface;
+
+    @NotNull(message = "Price is required")
+    @PositiveOrZero(message = "Price cannot be negative")
+    private BigDecimal price;
+
+    @Size(max = 2000, message = "Description cannot exceed 2000 characters")
+    private String description;
+
+    @Size(max = 255, message = "Picture URL cannot exceed 255 characters")
+    private String picture;
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public BigDecimal getSurface() {
+        return surface;
+    }
+
+    public void setSurface(BigDecimal surface) {
+        this.surface = surface;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getPicture() {
+        return picture;
+    }
+
+    public void setPicture(String picture) {
+        this.picture = picture;
+    }
+}
@@ -0,0 +1,44 @@
+package com.rentals.dto.rentals;
+
+import java.math.BigDecimal;
+
+public class RentalFilterDto {
+
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private BigDecimal minSurface;
+    private BigDecimal maxSurface;
+
+    // Getters and Setters
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(BigDecimal minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(BigDecimal maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public BigDecimal getMinSurface() {
+        return minSurface;
+    }
+
+    public void setMinSurface(BigDecimal minSurface) {
+        this.minSurface = minSurface;
+    }
+
+    public BigDecimal getMaxSurface() {
+        return maxSurface;
+    }
+
+    public void setMaxSurface(BigDecimal maxSurface) {
+        this.maxSurface = maxSurface;
+    }
+}
@@ -0,0 +1,13 @@
+package com.rentals.dto.rentals;
+
+import java.math.BigDecimal;
+
+// Projection used to seed the in-memory range index without loading whole entities
+public interface RentalMeasuresView {
+
+    Integer getId();
+
+    BigDecimal getPrice();
+
+    BigDecimal getSurface();
+}
@@ -0,0 +1,7 @@
+package com.rentals.events;
+
+import com.rentals.model.Rental;
+
+// Published by RentalService once a rental has been saved
+public record RentalChangedEvent(Rental rental, boolean created) {
+}
@@ -0,0 +1,9 @@
+package com.rentals.events;
+
+import com.rentals.model.Rental;
+
+import java.util.List;
+
+// Published once per committed import batch, instead of one RentalChangedEvent per row
+public record RentalsImportedEvent(List<Rental> rentals) {
+}
@@ -0,0 +1,48 @@
+package com.rentals.model;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * The user behind a request, as read from the verified claims of its token: no database row is loaded
+ * to build it. The username is the email, like for User.
+ */
+public record AuthenticatedUser(Integer id, String email, String name) implements UserDetails {
+
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getName());
+    }
+
+    // The authenticated user, whichever way the filter built the principal, or null
+    public static AuthenticatedUser from(Authentication authentication) {
+        if (authentication == null) {
+            return null;
+        }
+        if (authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser;
+        }
+        if (authentication.getPrincipal() instanceof User user) {
+            return of(user);
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
@@ -0,0 +1,80 @@
+package com.rentals.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// A stored picture, identified by the SHA-256 of its bytes and shared by every rental using the same image
+@Entity
+@Table(name = "IMAGE_BLOBS")
+public class ImageBlob {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(nullable = false)
+    private Long size;
+
+    // Number of rentals whose picture is this blob
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    // Last reference change, so an unreferenced blob is only reclaimed after a grace period
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Integer getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(Integer refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,7 @@
+package com.rentals.model;
+
+public enum PictureStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -6,7 +6,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "RENTALS")
+@Table(name = "RENTALS", indexes = {
+        @Index(name = "idx_rentals_updated_at", columnList = "updated_at"),
+        @Index(name = "idx_rentals_change_seq", columnList = "change_seq")
+})
 public class Rental {
 
     @Id
@@ -24,19 +27,38 @@ public class Rental {
 
     private String picture;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "picture_status", length = 16)
+    private PictureStatus pictureStatus;
+
+    // Spooled upload still being processed; picture keeps the previous image until it is ready
+    @Column(name = "pending_picture")
+    private String pendingPicture;
+
     @Column(length = 2000)
     private String description;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
 
+    // Read-only view of the foreign key, so responses never need to load the owner
+    @Column(name = "owner_id", insertable = false, updatable = false)
+    private Integer ownerId;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    private Long version;
+
+    // Position of the last write in the rental_change_sequence, used by delta sync
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
     @PrePersist
     public void prePersist() {
         this.createdAt = LocalDateTime.now();
@@ -83,6 +105,22 @@ public class Rental {
         this.picture = picture;
     }
 
+    public PictureStatus getPictureStatus() {
+        return pictureStatus;
+    }
+
+    public void setPictureStatus(PictureStatus pictureStatus) {
+        this.pictureStatus = pictureStatus;
+    }
+
+    public String getPendingPicture() {
+        return pendingPicture;
+    }
+
+    public void setPendingPicture(String pendingPicture) {
+        this.pendingPicture = pendingPicture;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -99,6 +137,18 @@ public class Rental {
         this.owner = owner;
     }
 
+    public Integer getOwnerId() {
+        if (ownerId == null && owner != null) {
+            return owner.getId();
+        }
+        return ownerId;
+    }
+
+    // For rentals built outside the persistence context, such as the rows of a bulk import
+    public void setOwnerId(Integer ownerId) {
+        this.ownerId = ownerId;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -114,4 +164,20 @@ public class Rental {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
 }
@@ -0,0 +1,44 @@
+package com.rentals.repository;
+
+import com.rentals.model.ImageBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImageBlobRepository extends CrudRepository<ImageBlob, String> {
+
+    // Creates the blob without a reference, or refreshes it. Ingestion reserves a blob before looking for its
+    // file: the row lock waits for a collection in progress, and the refreshed date keeps the next one away.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO image_blobs (hash, filename, size, ref_count, created_at, updated_at) " +
+            "VALUES (:hash, :filename, :size, 0, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE updated_at = NOW()", nativeQuery = true)
+    void reserve(@Param("hash") String hash, @Param("filename") String filename, @Param("size") long size);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM ImageBlob b WHERE b.hash IN :hashes")
+    List<ImageBlob> lockAll(@Param("hashes") Collection<String> hashes);
+
+    // Creates the blob on its first reference; concurrent uploads of the same image just add references
+    @Modifying
+    @Query(value = "INSERT INTO image_blobs (hash, filename, size, ref_count, created_at, updated_at) " +
+            "VALUES (:hash, :filename, :size, 1, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = NOW()", nativeQuery = true)
+    void addReference(@Param("hash") String hash, @Param("filename") String filename, @Param("size") long size);
+
+    // By primary key, so only the blob's row is locked: filename is not indexed
+    @Modifying
+    @Query("UPDATE ImageBlob b SET b.refCount = b.refCount - 1, b.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE b.hash = :hash AND b.refCount > 0")
+    int removeReference(@Param("hash") String hash);
+}
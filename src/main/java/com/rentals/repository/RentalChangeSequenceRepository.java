@@ -0,0 +1,24 @@
+package com.rentals.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public class RentalChangeSequenceRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RentalChangeSequenceRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Reserves `count` numbers and returns the last one. The row lock is held until the caller commits,
+    // so sequence numbers become visible in commit order and a reader never skips a late commit.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long allocate(int count) {
+        jdbcTemplate.update("UPDATE rental_change_sequence SET value = LAST_INSERT_ID(value + ?) WHERE id = 1", count);
+        return jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+    }
+}
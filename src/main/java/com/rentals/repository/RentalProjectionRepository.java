@@ -0,0 +1,13 @@
+package com.rentals.repository;
+
+import com.rentals.dto.rentals.RentalFilterDto;
+
+import java.util.List;
+
+public interface RentalProjectionRepository {
+
+    // Each row holds the rental id followed by the requested paths, in order
+    List<Object[]> findPageProjection(List<String> paths, Integer afterId, RentalFilterDto filter, int limit);
+
+    List<Object[]> findProjectionByIds(List<String> paths, List<Integer> ids);
+}
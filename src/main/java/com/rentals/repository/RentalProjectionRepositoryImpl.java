@@ -0,0 +1,57 @@
+package com.rentals.repository;
+
+import com.rentals.dto.rentals.RentalFilterDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RentalProjectionRepositoryImpl implements RentalProjectionRepository {
+
+    private final EntityManager entityManager;
+
+    public RentalProjectionRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Object[]> findPageProjection(List<String> paths, Integer afterId, RentalFilterDto filter, int limit) {
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> parameters = new HashMap<>();
+        addCondition(conditions, parameters, "r.id > :afterId", "afterId", afterId);
+        addCondition(conditions, parameters, "r.price >= :minPrice", "minPrice", filter.getMinPrice());
+        addCondition(conditions, parameters, "r.price <= :maxPrice", "maxPrice", filter.getMaxPrice());
+        addCondition(conditions, parameters, "r.surface >= :minSurface", "minSurface", filter.getMinSurface());
+        addCondition(conditions, parameters, "r.surface <= :maxSurface", "maxSurface", filter.getMaxSurface());
+
+        String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        TypedQuery<Object[]> query = entityManager.createQuery(select(paths) + where + " ORDER BY r.id ASC", Object[].class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<Object[]> findProjectionByIds(List<String> paths, List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return entityManager.createQuery(select(paths) + " WHERE r.id IN :ids ORDER BY r.id ASC", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    // Paths come from RentalMapper's whitelist, never from the request itself
+    private String select(List<String> paths) {
+        return "SELECT r.id, " + String.join(", ", paths) + " FROM Rental r";
+    }
+
+    private void addCondition(List<String> conditions, Map<String, Object> parameters, String condition, String name, Object value) {
+        if (value != null) {
+            conditions.add(condition);
+            parameters.put(name, value);
+        }
+    }
+}
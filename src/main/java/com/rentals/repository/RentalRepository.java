@@ -1,9 +1,53 @@
 package com.rentals.repository;
 
+import com.rentals.dto.rentals.RentalMeasuresView;
+import com.rentals.model.PictureStatus;
 import com.rentals.model.Rental;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
-public interface RentalRepository extends CrudRepository<Rental, Integer> {
+public interface RentalRepository extends CrudRepository<Rental, Integer>, RentalProjectionRepository {
+
+    // Keyset pagination: resume after the last returned id instead of using an OFFSET
+    @Query("SELECT r FROM Rental r " +
+            "WHERE (:afterId IS NULL OR r.id > :afterId) " +
+            "AND (:minPrice IS NULL OR r.price >= :minPrice) " +
+            "AND (:maxPrice IS NULL OR r.price <= :maxPrice) " +
+            "AND (:minSurface IS NULL OR r.surface >= :minSurface) " +
+            "AND (:maxSurface IS NULL OR r.surface <= :maxSurface) " +
+            "ORDER BY r.id ASC")
+    List<Rental> findPageAfter(@Param("afterId") Integer afterId,
+                               @Param("minPrice") BigDecimal minPrice,
+                               @Param("maxPrice") BigDecimal maxPrice,
+                               @Param("minSurface") BigDecimal minSurface,
+                               @Param("maxSurface") BigDecimal maxSurface,
+                               Pageable pageable);
+
+    // Integer.MIN_VALUE makes MySQL Connector/J stream rows instead of buffering the whole result set
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT r FROM Rental r ORDER BY r.id ASC")
+    Stream<Rental> streamAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query("SELECT r.id AS id, r.price AS price, r.surface AS surface FROM Rental r")
+    Stream<RentalMeasuresView> streamMeasures();
+
+    List<Rental> findByChangeSeqGreaterThanOrderByChangeSeqAsc(Long since, Pageable pageable);
+
+    List<Rental> findByPictureStatus(PictureStatus pictureStatus);
+
+    // Picture references by id ranges, for the orphaned image collector
+    @Query("SELECT r.id, r.picture, r.pendingPicture FROM Rental r WHERE r.id > :afterId ORDER BY r.id ASC")
+    List<Object[]> findPictureReferencesAfter(@Param("afterId") Integer afterId, Pageable pageable);
 }
@@ -0,0 +1,32 @@
+package com.rentals.repository;
+
+import com.rentals.model.RevokedToken;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends CrudRepository<RevokedToken, String> {
+
+    // Returns 0 when the token was already revoked, so a refresh token cannot be used twice
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO revoked_tokens (jti, expires_at, revoked_at) " +
+            "VALUES (:jti, :expiresAt, :revokedAt)", nativeQuery = true)
+    int revoke(@Param("jti") String jti, @Param("expiresAt") LocalDateTime expiresAt, @Param("revokedAt") LocalDateTime revokedAt);
+
+    List<RevokedToken> findByExpiresAtAfter(LocalDateTime now);
+
+    List<RevokedToken> findByRevokedAtGreaterThanEqualAndExpiresAtAfter(LocalDateTime since, LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RevokedToken t WHERE t.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
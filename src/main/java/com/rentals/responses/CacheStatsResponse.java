@@ -0,0 +1,4 @@
+package com.rentals.responses;
+
+public record CacheStatsResponse(long hits, long misses, long evictions, long size) {
+}
@@ -0,0 +1,14 @@
+package com.rentals.responses;
+
+import java.math.BigDecimal;
+
+public record DistributionResponse(
+        BigDecimal min,
+        BigDecimal max,
+        BigDecimal mean,
+        BigDecimal p25,
+        BigDecimal p50,
+        BigDecimal p75,
+        BigDecimal p90,
+        BigDecimal p99) {
+}
@@ -0,0 +1,6 @@
+package com.rentals.responses;
+
+import java.math.BigDecimal;
+
+public record HistogramBucketResponse(BigDecimal from, BigDecimal to, long count) {
+}
@@ -0,0 +1,6 @@
+package com.rentals.responses;
+
+import java.util.List;
+
+public record ImportReportResponse(long imported, long rejected, List<ImportRowError> errors) {
+}
@@ -0,0 +1,4 @@
+package com.rentals.responses;
+
+public record ImportRowError(long row, String message) {
+}
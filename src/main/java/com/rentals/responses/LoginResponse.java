@@ -4,6 +4,8 @@ public class LoginResponse {
 
     private String token;
     private long expiresIn;
+    private String refreshToken;
+    private long refreshExpiresIn;
 
     public String getToken() {
         return token;
@@ -22,4 +24,22 @@ public class LoginResponse {
         this.expiresIn = expiresIn;
         return this;
     }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public LoginResponse setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+        return this;
+    }
+
+    public long getRefreshExpiresIn() {
+        return refreshExpiresIn;
+    }
+
+    public LoginResponse setRefreshExpiresIn(long refreshExpiresIn) {
+        this.refreshExpiresIn = refreshExpiresIn;
+        return this;
+    }
 }
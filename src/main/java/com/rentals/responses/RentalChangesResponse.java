@@ -0,0 +1,6 @@
+package com.rentals.responses;
+
+import java.util.List;
+
+public record RentalChangesResponse(List<RentalResponse> rentals, long next_since, boolean has_more) {
+}
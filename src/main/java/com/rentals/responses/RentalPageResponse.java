@@ -0,0 +1,6 @@
+package com.rentals.responses;
+
+import java.util.List;
+
+public record RentalPageResponse<T>(List<T> rentals, String next_cursor) {
+}
@@ -9,17 +9,19 @@ public class RentalResponse {
     private BigDecimal surface;
     private BigDecimal price;
     private String picture;
+    private String picture_status;
     private String description;
     private Integer owner_id;
     private String created_at;
     private String updated_at;
 
-    public RentalResponse(Integer id, String name, BigDecimal surface, BigDecimal price, String picture, String description, Integer owner_id, String created_at, String updated_at) {
+    public RentalResponse(Integer id, String name, BigDecimal surface, BigDecimal price, String picture, String picture_status, String description, Integer owner_id, String created_at, String updated_at) {
         this.id = id;
         this.name = name;
         this.surface = surface;
         this.price = price;
         this.picture = picture;
+        this.picture_status = picture_status;
         this.description = description;
         this.owner_id = owner_id;
         this.created_at = created_at;
@@ -47,6 +49,10 @@ public class RentalResponse {
         return picture;
     }
 
+    public String getPicture_status() {
+        return picture_status;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -83,6 +89,10 @@ public class RentalResponse {
         this.picture = picture;
     }
 
+    public void setPicture_status(String picture_status) {
+        this.picture_status = picture_status;
+    }
+
     public void setDescription(String description) {
         this.description = description;
     }
@@ -0,0 +1,11 @@
+package com.rentals.responses;
+
+import java.util.List;
+
+public record RentalStatisticsResponse(
+        long count,
+        DistributionResponse price,
+        DistributionResponse price_per_m2,
+        DistributionResponse surface,
+        List<HistogramBucketResponse> surface_histogram) {
+}
@@ -6,6 +6,8 @@ import com.rentals.exceptions.NotFoundException;
 import com.rentals.exceptions.UnauthorizedException;
 import com.rentals.model.User;
 import com.rentals.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
@@ -20,15 +22,21 @@ public class AuthenticationService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
+    private final JwtService jwtService;
+    private final TokenRevocationService tokenRevocationService;
 
     public AuthenticationService(
             UserRepository userRepository,
             AuthenticationManager authenticationManager,
-            PasswordEncoder passwordEncoder
+            PasswordEncoder passwordEncoder,
+            JwtService jwtService,
+            TokenRevocationService tokenRevocationService
     ) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.jwtService = jwtService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     public User signup(RegisterUserDto input) {
@@ -57,4 +65,44 @@ public class AuthenticationService {
         return userRepository.findByEmail(input.getEmail())
                 .orElseThrow(() -> new NotFoundException("User not found after authentication."));
     }
+
+    // Consumes a refresh token: it is revoked, so it can only be exchanged once for a new pair.
+    // The user is read again, so a deleted account cannot keep refreshing.
+    public User refresh(String refreshToken) {
+        Claims claims = parse(refreshToken);
+        if (!jwtService.isRefreshToken(claims) || claims.getId() == null) {
+            throw new UnauthorizedException("Invalid refresh token.");
+        }
+        if (!tokenRevocationService.revoke(claims.getId(), claims.getExpiration())) {
+            throw new UnauthorizedException("Refresh token already used or revoked.");
+        }
+        return userRepository.findByEmail(claims.getSubject())
+                .orElseThrow(() -> new UnauthorizedException("User not found."));
+    }
+
+    public void logout(String accessToken, String refreshToken) {
+        revoke(accessToken);
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            Claims claims = parse(refreshToken);
+            if (!claims.getSubject().equals(parse(accessToken).getSubject())) {
+                throw new UnauthorizedException("Refresh token issued to another user.");
+            }
+            revoke(refreshToken);
+        }
+    }
+
+    private void revoke(String token) {
+        Claims claims = parse(token);
+        if (claims.getId() != null) {
+            tokenRevocationService.revoke(claims.getId(), claims.getExpiration());
+        }
+    }
+
+    private Claims parse(String token) {
+        try {
+            return jwtService.validate(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new UnauthorizedException("Invalid or expired token.");
+        }
+    }
 }
@@ -0,0 +1,172 @@
+package com.rentals.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams RENTALS and MESSAGES rows as NDJSON or CSV straight from a MySQL cursor, without building entities.
+ * Messages are private: each user only exports the messages they sent or received on their own rentals.
+ */
+@Service
+public class ExportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final String RENTALS_SQL = "SELECT id, name, surface, price, picture, description, owner_id, created_at, updated_at "
+            + "FROM rentals";
+    private static final String MESSAGES_SQL = "SELECT id, rental_id, user_id, message, created_at, updated_at "
+            + "FROM messages";
+    // Messages the user sent, or received on one of their rentals
+    private static final String OWN_MESSAGES_CONDITION = "(user_id = ? OR rental_id IN (SELECT id FROM rentals WHERE owner_id = ?))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public ExportService(DataSource dataSource, ObjectMapper objectMapper) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Integer.MIN_VALUE makes MySQL Connector/J stream rows instead of buffering the whole result set
+        this.jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.objectMapper = objectMapper;
+    }
+
+    public void exportRentals(Format format, LocalDateTime updatedSince, OutputStream output) throws IOException {
+        export(RENTALS_SQL, null, new ArrayList<>(), format, updatedSince, output);
+    }
+
+    public void exportMessages(Integer userId, Format format, LocalDateTime updatedSince, OutputStream output) throws IOException {
+        export(MESSAGES_SQL, OWN_MESSAGES_CONDITION, new ArrayList<>(List.of(userId, userId)), format, updatedSince, output);
+    }
+
+    private void export(String baseSql, String condition, List<Object> args, Format format, LocalDateTime updatedSince, OutputStream output) throws IOException {
+        List<String> conditions = new ArrayList<>();
+        if (condition != null) {
+            conditions.add(condition);
+        }
+        if (updatedSince != null) {
+            conditions.add("updated_at >= ?");
+            args.add(updatedSince);
+        }
+        String sql = baseSql
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + (updatedSince == null ? " ORDER BY id" : " ORDER BY updated_at, id");
+
+        RowWriter writer = format == Format.CSV ? new CsvRowWriter(output) : new NdjsonRowWriter(output);
+        try {
+            jdbcTemplate.query(sql, (RowCallbackHandler) resultSet -> {
+                try {
+                    writer.write(resultSet);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, args.toArray());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // Not reached on failure: the output is left unfinished and the caller aborts the response
+        writer.finish();
+    }
+
+    private interface RowWriter {
+        void write(ResultSet row) throws SQLException, IOException;
+
+        // Flushes the rows without closing the output, which belongs to the caller
+        void finish() throws IOException;
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+        private List<String> columns;
+
+        private NdjsonRowWriter(OutputStream output) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(output);
+            // One object per line instead of the default single space separator
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet row) throws SQLException, IOException {
+            if (columns == null) {
+                columns = columnNames(row);
+            }
+            generator.writeStartObject();
+            for (int i = 0; i < columns.size(); i++) {
+                generator.writeFieldName(columns.get(i));
+                generator.writeObject(row.getObject(i + 1));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        private List<String> columns;
+
+        private CsvRowWriter(OutputStream output) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void write(ResultSet row) throws SQLException, IOException {
+            if (columns == null) {
+                columns = columnNames(row);
+                writer.write(String.join(",", columns));
+                writer.write("\r\n");
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = row.getObject(i + 1);
+                if (value != null) {
+                    writer.write(escape(value.toString()));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        private String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private static List<String> columnNames(ResultSet row) throws SQLException {
+        ResultSetMetaData metaData = row.getMetaData();
+        List<String> columns = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.add(metaData.getColumnLabel(i));
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,143 @@
+package com.rentals.services;
+
+import com.rentals.cache.ImageByteCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Fills the image cache at startup with the images requested most often in the access logs, so the first
+ * requests after a restart do not all go to disk.
+ */
+@Service
+public class ImageCacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageCacheWarmer.class);
+
+    // The request line of an image request, as written by Tomcat's access log valve
+    private static final Pattern IMAGE_REQUEST = Pattern.compile("\"(?:GET|HEAD) /api/rentals/images/([^ ?\"]+)(?:\\?[^ \"]*?\\bsize=(\\w+))?[^ \"]* HTTP");
+
+    private final ImageByteCache imageByteCache;
+    private final ImageServingService imageServingService;
+    private final ImageVariantService imageVariantService;
+
+    // An access log file, or the directory of the rotated ones (read newest first); empty to disable
+    @Value("${rentals.images.cache.warmup-log}")
+    private String warmupLog;
+
+    @Value("${rentals.images.cache.warmup-max-lines}")
+    private long maxLines;
+
+    public ImageCacheWarmer(
+            ImageByteCache imageByteCache,
+            ImageServingService imageServingService,
+            ImageVariantService imageVariantService
+    ) {
+        this.imageByteCache = imageByteCache;
+        this.imageServingService = imageServingService;
+        this.imageVariantService = imageVariantService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnReady() {
+        if (warmupLog.isBlank() || !imageByteCache.isEnabled()) {
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "image-cache-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            Map<List<String>, Integer> counts = countRequests(Paths.get(warmupLog));
+            List<Map.Entry<List<String>, Integer>> popular = new ArrayList<>(counts.entrySet());
+            popular.sort(Map.Entry.<List<String>, Integer>comparingByValue().reversed());
+
+            int loaded = 0;
+            long bytes = 0;
+            for (Map.Entry<List<String>, Integer> request : popular) {
+                try {
+                    long size = imageServingService.warmUp(request.getKey());
+                    if (size > 0) {
+                        loaded++;
+                        bytes += size;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Deleted since it was logged, or a name that never was valid
+                    logger.debug("Could not warm up {}: {}", request.getKey().get(0), e.getMessage());
+                }
+                if (!imageByteCache.hasRoomFor(1)) {
+                    break;
+                }
+            }
+            logger.info("Image cache warmed up in {} ms: {} images, {} bytes, from {} distinct requests",
+                    System.currentTimeMillis() - start, loaded, bytes, counts.size());
+        } catch (IOException e) {
+            logger.warn("Could not warm up the image cache from {}: {}", warmupLog, e.getMessage());
+        }
+    }
+
+    // Request counts by the image names answering them
+    private Map<List<String>, Integer> countRequests(Path log) throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(log)) {
+            try (Stream<Path> list = Files.list(log)) {
+                files = list.filter(Files::isRegularFile)
+                        .sorted(Comparator.comparing(this::lastModified).reversed())
+                        .toList();
+            }
+        } else {
+            files = List.of(log);
+        }
+
+        Map<List<String>, Integer> counts = new HashMap<>();
+        long lines = 0;
+        for (Path file : files) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (++lines > maxLines) {
+                        return counts;
+                    }
+                    Matcher matcher = IMAGE_REQUEST.matcher(line);
+                    if (!matcher.find()) {
+                        continue;
+                    }
+                    String size = matcher.group(2) != null ? matcher.group(2) : ImageVariantService.FULL;
+                    if (ImageVariantService.FULL.equals(size) || imageVariantService.getSizes().contains(size)) {
+                        counts.merge(imageVariantService.candidates(matcher.group(1), size), 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.rentals.services;
+
+import com.rentals.cache.ImageByteCache;
+import com.rentals.model.ImageBlob;
+import com.rentals.repository.ImageBlobRepository;
+import com.rentals.repository.RentalRepository;
+import com.rentals.storage.ImagePathResolver;
+import com.rentals.storage.ImageStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Periodically deletes stored images that no rental references: pictures replaced by an update, uploads
+ * superseded before being attached, and spooled files whose rental was never saved.
+ * Only files older than the grace period are considered, so nothing written by an ingestion in flight is touched.
+ */
+@Service
+public class ImageGarbageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageGarbageCollector.class);
+
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    // A stored image, or a spooled upload when `path` is set
+    private record Candidate(String name, Path path, String key, long size) {
+    }
+
+    private final RentalRepository rentalRepository;
+    private final ImageBlobRepository imageBlobRepository;
+    private final ImageStore imageStore;
+    private final ImageByteCache imageByteCache;
+    private final ImagePathResolver imagePathResolver;
+    private final ImageVariantService imageVariantService;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-gc");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong scannedFiles = new AtomicLong();
+    private final AtomicLong deletedFiles = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private volatile Instant lastRun;
+
+    @Value("${rentals.images.gc.grace-period-hours}")
+    private long gracePeriodHours;
+
+    @Value("${rentals.images.gc.batch-size}")
+    private int batchSize;
+
+    // Files examined per second, so a collection never competes with image serving for the disk
+    @Value("${rentals.images.gc.files-per-second}")
+    private int filesPerSecond;
+
+    public ImageGarbageCollector(
+            RentalRepository rentalRepository,
+            ImageBlobRepository imageBlobRepository,
+            ImageStore imageStore,
+            ImageByteCache imageByteCache,
+            ImagePathResolver imagePathResolver,
+            ImageVariantService imageVariantService,
+            PlatformTransactionManager transactionManager,
+            @Value("${rentals.images.gc.interval-minutes}") long intervalMinutes
+    ) {
+        this.rentalRepository = rentalRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.imageStore = imageStore;
+        this.imageByteCache = imageByteCache;
+        this.imagePathResolver = imagePathResolver;
+        this.imageVariantService = imageVariantService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (intervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::collect, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        stats.put("runs", runs.get());
+        stats.put("scanned_files", scannedFiles.get());
+        stats.put("deleted_files", deletedFiles.get());
+        stats.put("reclaimed_bytes", reclaimedBytes.get());
+        stats.put("last_run", lastRun != null ? lastRun.toString() : null);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public void collect() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            long deletedBefore = deletedFiles.get();
+            long reclaimedBefore = reclaimedBytes.get();
+            Instant cutoff = Instant.now().minus(Duration.ofHours(gracePeriodHours));
+
+            // References are read before the files are listed. A file created after this point is
+            // younger than the grace period, so a reference it gains meanwhile cannot be missed.
+            Set<String> referenced = new HashSet<>();
+            Set<String> pending = new HashSet<>();
+            loadReferences(referenced, pending);
+
+            collectStored(referenced, cutoff);
+            collectSpool(pending, cutoff);
+
+            runs.incrementAndGet();
+            lastRun = Instant.now();
+            logger.info("Image collection done in {} ms: {} files deleted, {} bytes reclaimed",
+                    System.currentTimeMillis() - start, deletedFiles.get() - deletedBefore, reclaimedBytes.get() - reclaimedBefore);
+        } catch (Exception e) {
+            logger.error("Image collection stopped: {}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void loadReferences(Set<String> referenced, Set<String> pending) {
+        Integer afterId = 0;
+        List<Object[]> rows;
+        do {
+            rows = rentalRepository.findPictureReferencesAfter(afterId, PageRequest.of(0, batchSize));
+            for (Object[] row : rows) {
+                afterId = (Integer) row[0];
+                if (row[1] instanceof String picture) {
+                    referenced.add(key(picture.substring(picture.lastIndexOf('/') + 1)));
+                }
+                if (row[2] instanceof String uploadId) {
+                    pending.add(uploadId);
+                }
+            }
+        } while (rows.size() == batchSize);
+    }
+
+    private void collectStored(Set<String> referenced, Instant cutoff) throws IOException {
+        List<Candidate> batch = new ArrayList<>(batchSize);
+        imageStore.forEach(entry -> {
+            Candidate candidate = candidate(entry.name(), null, entry.size(), entry.lastModified(), cutoff);
+            if (candidate == null || referenced.contains(candidate.key())) {
+                return;
+            }
+            batch.add(candidate);
+            if (batch.size() >= batchSize) {
+                deleteBatch(batch, cutoff);
+                batch.clear();
+            }
+        });
+        deleteBatch(batch, cutoff);
+    }
+
+    private void collectSpool(Set<String> pending, Instant cutoff) throws IOException {
+        Path spoolDir = imagePathResolver.getSpoolDir();
+        if (Files.notExists(spoolDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Candidate candidate = spooled(path, cutoff);
+                if (candidate != null && !pending.contains(candidate.name())) {
+                    delete(candidate);
+                }
+            }
+        }
+    }
+
+    private Candidate spooled(Path path, Instant cutoff) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // Ingested since it was listed
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+        return candidate(path.getFileName().toString(), path, attributes.size(), attributes.lastModifiedTime().toMillis(), cutoff);
+    }
+
+    // Old enough entries, after the throttling pause
+    private Candidate candidate(String name, Path path, long size, long lastModified, Instant cutoff) {
+        scannedFiles.incrementAndGet();
+        if (filesPerSecond > 0) {
+            try {
+                TimeUnit.MICROSECONDS.sleep(1_000_000L / filesPerSecond);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Image collection interrupted");
+            }
+        }
+        if (!Instant.ofEpochMilli(lastModified).isBefore(cutoff)) {
+            return null;
+        }
+        return new Candidate(name, path, key(name), size);
+    }
+
+    private void deleteBatch(List<Candidate> batch, Instant cutoff) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<String> hashes = new HashSet<>();
+        for (Candidate candidate : batch) {
+            if (CONTENT_HASH.matcher(candidate.key()).matches()) {
+                hashes.add(candidate.key());
+            }
+        }
+        if (hashes.isEmpty()) {
+            // Legacy names are never reused, so a file without a reference stays without one
+            batch.forEach(this::delete);
+            return;
+        }
+
+        LocalDateTime cutoffDate = LocalDateTime.ofInstant(cutoff, ZoneId.systemDefault());
+        // Locked until the files are gone: an ingestion reserving one of these blobs waits for the commit,
+        // then finds neither row nor file and stores its upload again
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, ImageBlob> blobs = new HashMap<>();
+            for (ImageBlob blob : imageBlobRepository.lockAll(hashes)) {
+                blobs.put(blob.getHash(), blob);
+            }
+            Set<String> reclaimed = new HashSet<>();
+            for (Candidate candidate : batch) {
+                ImageBlob blob = blobs.get(candidate.key());
+                if (blob != null && blob.getUpdatedAt() != null && blob.getUpdatedAt().isAfter(cutoffDate)) {
+                    // Reserved or referenced recently
+                    continue;
+                }
+                if (blob != null && blob.getRefCount() > 0) {
+                    // Counted as used but no rental points at it: keep the file, the count is what drifted
+                    logger.warn("Image blob {} has {} references but no rental uses it", blob.getHash(), blob.getRefCount());
+                    continue;
+                }
+                if (delete(candidate) && blob != null) {
+                    reclaimed.add(blob.getHash());
+                }
+            }
+            imageBlobRepository.deleteAllById(reclaimed);
+        });
+    }
+
+    private boolean delete(Candidate candidate) {
+        try {
+            boolean deleted;
+            if (candidate.path() != null) {
+                deleted = Files.deleteIfExists(candidate.path());
+            } else {
+                deleted = imageStore.delete(candidate.name());
+                imageByteCache.evict(candidate.name());
+            }
+            if (deleted) {
+                deletedFiles.incrementAndGet();
+                reclaimedBytes.addAndGet(candidate.size());
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not delete orphaned image {}: {}", candidate.name(), e.getMessage());
+            return false;
+        }
+    }
+
+    // What a file belongs to: its name without extension or size suffix, shared by an original and its variants
+    private String key(String filename) {
+        int dot = filename.lastIndexOf('.');
+        String stem = dot < 0 ? filename : filename.substring(0, dot);
+        int dash = stem.lastIndexOf('-');
+        if (dash >= 0 && imageVariantService.getSizes().contains(stem.substring(dash + 1))) {
+            stem = stem.substring(0, dash);
+        }
+        return stem;
+    }
+}
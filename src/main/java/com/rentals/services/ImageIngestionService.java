@@ -0,0 +1,271 @@
+package com.rentals.services;
+
+import com.rentals.exceptions.ServiceUnavailableException;
+import com.rentals.model.ImageBlob;
+import com.rentals.model.Rental;
+import com.rentals.repository.ImageBlobRepository;
+import com.rentals.storage.ImagePathResolver;
+import com.rentals.storage.ImageStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves rental pictures off the request path. The request only spools the upload and records it as pending;
+ * a bounded pool of workers stores it and attaches it to the rental.
+ * Stored pictures are content-addressed: named after the SHA-256 of their bytes, so an image uploaded
+ * for several rentals is stored once.
+ */
+@Service
+public class ImageIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageIngestionService.class);
+
+    private final RentalService rentalService;
+    private final ImageVariantService imageVariantService;
+    private final ImageBlobRepository imageBlobRepository;
+    private final ImageStore imageStore;
+    // Under the image root, so that the filesystem store moves a spooled file into place with a rename
+    private final Path spoolDir;
+
+    private final ExecutorService workers;
+    // One permit per spooled upload, released once its ingestion is over
+    private final Semaphore slots;
+    private final int capacity;
+    private volatile Thread resumer;
+
+    @Value("${base.url}")
+    private String baseUrl;
+
+    @Value("${rentals.images.retry-after-seconds}")
+    private long retryAfterSeconds;
+
+    public ImageIngestionService(
+            RentalService rentalService,
+            ImageVariantService imageVariantService,
+            ImageBlobRepository imageBlobRepository,
+            ImageStore imageStore,
+            ImagePathResolver imagePathResolver,
+            @Value("${rentals.images.workers}") int workerCount,
+            @Value("${rentals.images.queue-capacity}") int capacity
+    ) {
+        this.rentalService = rentalService;
+        this.imageVariantService = imageVariantService;
+        this.imageBlobRepository = imageBlobRepository;
+        this.imageStore = imageStore;
+        this.spoolDir = imagePathResolver.getSpoolDir();
+        this.capacity = capacity;
+        this.slots = new Semaphore(capacity);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "image-ingestion-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Runs on the request thread. Fails fast with a 503 instead of queueing without bound.
+    public String spool(MultipartFile picture) throws IOException {
+        if (!slots.tryAcquire()) {
+            throw new ServiceUnavailableException("Too many pictures are being processed, please retry later.", retryAfterSeconds);
+        }
+        try {
+            String uploadId = UUID.randomUUID() + extension(picture.getOriginalFilename());
+            Files.createDirectories(spoolDir);
+            // An absolute File lets the container rename its temporary file instead of copying it
+            picture.transferTo(spoolDir.resolve(uploadId).toAbsolutePath().toFile());
+            return uploadId;
+        } catch (IOException | RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    // Hands a spooled upload to the workers, once the rental referencing it has been committed
+    public void submit(Integer rentalId, String uploadId) {
+        workers.execute(() -> ingest(rentalId, uploadId));
+    }
+
+    // Gives back a spooled upload whose rental could not be saved
+    public void discard(String uploadId) {
+        deleteQuietly(spoolDir.resolve(uploadId));
+        slots.release();
+    }
+
+    public int getPendingCount() {
+        return capacity - slots.availablePermits();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Uploads that were still queued when the application stopped. Waiting for slots would hold up the other
+    // ready listeners, so they are handed over from a thread of their own rather than from the event thread.
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        Thread thread = new Thread(this::resume, "image-ingestion-resumer");
+        thread.setDaemon(true);
+        resumer = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Spooled files are kept, they are resumed on the next start
+        Thread thread = resumer;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        workers.shutdownNow();
+    }
+
+    private void resume() {
+        int resumed = 0;
+        try {
+            for (Rental rental : rentalService.findRentalsWithPendingPicture()) {
+                String uploadId = rental.getPendingPicture();
+                if (uploadId != null && Files.exists(spoolDir.resolve(uploadId))) {
+                    // Not a worker thread: the workers release the slots this waits for
+                    slots.acquire();
+                    submit(rental.getId(), uploadId);
+                    resumed++;
+                } else {
+                    rentalService.pictureIngested(rental.getId(), uploadId, null);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Shutting down, the rest is resumed on the next start
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Could not resume the pending pictures: {}", e.getMessage(), e);
+        }
+        if (resumed > 0) {
+            logger.info("Resumed ingestion of {} pending pictures", resumed);
+        }
+    }
+
+    private void ingest(Integer rentalId, String uploadId) {
+        Path spooled = spoolDir.resolve(uploadId);
+        try {
+            long size = Files.size(spooled);
+            String hash = sha256(spooled);
+            imageBlobRepository.reserve(hash, hash + detectExtension(spooled, uploadId), size);
+            // An image uploaded before keeps its first name, whatever the extension of this upload
+            String filename = imageBlobRepository.findById(hash)
+                    .map(ImageBlob::getFilename)
+                    .orElseThrow();
+            if (imageStore.exists(filename)) {
+                Files.delete(spooled);
+            } else {
+                // Two uploads of a new image may race here: both puts store the same bytes
+                imageStore.put(filename, spooled);
+                try {
+                    imageVariantService.generate(filename);
+                } catch (IOException | RuntimeException e) {
+                    // The original is still usable, it is served for every size
+                    logger.warn("Could not generate the variants of picture {}: {}", filename, e.getMessage());
+                }
+            }
+            // When superseded, the blob is left unreferenced and reclaimed with the other orphans
+            rentalService.pictureIngested(rentalId, uploadId,
+                    new StoredImage(hash, filename, size, baseUrl + "/api/rentals/images/" + filename));
+        } catch (Exception e) {
+            logger.error("Error while ingesting picture {} of rental {}: {}", uploadId, rentalId, e.getMessage(), e);
+            deleteQuietly(spooled);
+            try {
+                rentalService.pictureIngested(rentalId, uploadId, null);
+            } catch (RuntimeException failure) {
+                logger.error("Could not mark picture {} of rental {} as failed: {}", uploadId, rentalId, failure.getMessage());
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    // Streams the file through the digest once, in 64KB reads
+    private String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // The stored extension is what the image server derives the Content-Type from, so it comes from the
+    // file signature rather than from whatever name the client sent
+    private String detectExtension(Path path, String uploadId) throws IOException {
+        byte[] header = new byte[12];
+        int read;
+        try (InputStream input = Files.newInputStream(path)) {
+            read = input.readNBytes(header, 0, header.length);
+        }
+        if (read >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return ".jpg";
+        }
+        if (read >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return ".png";
+        }
+        if (read >= 6 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return ".gif";
+        }
+        if (read >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return ".webp";
+        }
+        int dot = uploadId.lastIndexOf('.');
+        return dot < 0 ? "" : uploadId.substring(dot).toLowerCase(Locale.ROOT);
+    }
+
+    private String extension(String originalFilename) {
+        if (originalFilename == null || originalFilename.lastIndexOf('.') < 0) {
+            return "";
+        }
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.'));
+        // The extension ends up in a path and a URL
+        if (!extension.matches("\\.[A-Za-z0-9]{1,10}")) {
+            throw new IllegalArgumentException("Invalid picture file extension.");
+        }
+        return extension;
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+}
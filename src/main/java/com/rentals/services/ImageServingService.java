@@ -0,0 +1,256 @@
+package com.rentals.services;
+
+import com.rentals.cache.ImageByteCache;
+import com.rentals.exceptions.NotFoundException;
+import com.rentals.storage.ImageLocation;
+import com.rentals.storage.ImageStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Writes stored pictures to the response without going through the heap: from the off-heap cache for the
+ * most requested ones, otherwise through Tomcat's sendfile when available, or with FileChannel.transferTo.
+ * Handles conditional and single-range requests.
+ */
+@Service
+public class ImageServingService {
+
+    // Tomcat request attributes driving sendfile, see org.apache.coyote.Constants
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // "<sha256>[-<size>].<ext>": the name changes whenever the bytes do
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}(-[a-z]+)?\\.[a-z0-9]+");
+
+    private final ImageStore imageStore;
+    private final ImageByteCache imageByteCache;
+
+    @Value("${rentals.images.sendfile-min-bytes}")
+    private long sendfileMinBytes;
+
+    public ImageServingService(ImageStore imageStore, ImageByteCache imageByteCache) {
+        this.imageStore = imageStore;
+        this.imageByteCache = imageByteCache;
+    }
+
+    // Serves the first of the images `names` that is stored
+    public void serve(List<String> names, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Keyed by the request, so a cached answer skips the lookup of variants that do not exist as well
+        String key = names.get(0);
+        ImageByteCache.CachedImage cached = imageByteCache.get(key);
+        if (cached != null) {
+            long[] range = writeHeaders(cached.filename(), cached.bytes().remaining(), cached.lastModified(), request, response);
+            if (range != null) {
+                write(cached.bytes(), range[0], range[1], response);
+            }
+            return;
+        }
+
+        String filename = null;
+        ImageLocation location = null;
+        for (String name : names) {
+            location = imageStore.locate(name);
+            if (location != null) {
+                filename = name;
+                break;
+            }
+        }
+        if (location == null) {
+            throw new NotFoundException("Image " + key + " not found");
+        }
+        if (imageByteCache.admit(key, location.size())) {
+            cached = imageByteCache.load(key, filename, location);
+        }
+
+        long[] range = writeHeaders(filename, location.size(), location.lastModified(), request, response);
+        if (range == null) {
+            return;
+        }
+        long start = range[0];
+        long end = range[1];
+        if (cached != null) {
+            write(cached.bytes(), start, end, response);
+            return;
+        }
+
+        // The image may be a slice of a larger file, such as a segment of the packed store
+        long offset = location.offset();
+        if (end - start >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat streams the file once the handler returns, from the kernel page cache to the socket
+            request.setAttribute(SENDFILE_FILENAME, location.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, offset + start);
+            request.setAttribute(SENDFILE_END, offset + end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(location.file(), StandardOpenOption.READ)) {
+            WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+            long position = offset + start;
+            while (position < offset + end) {
+                long written = channel.transferTo(position, offset + end - position, output);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+            }
+        }
+    }
+
+    // Caches the image a request for `names` is answered with, unless the cache is full. Returns the bytes cached.
+    public long warmUp(List<String> names) throws IOException {
+        for (String name : names) {
+            ImageLocation location = imageStore.locate(name);
+            if (location != null) {
+                if (!imageByteCache.hasRoomFor(location.size())) {
+                    return 0;
+                }
+                ImageByteCache.CachedImage cached = imageByteCache.load(names.get(0), name, location);
+                return cached == null ? 0 : cached.bytes().remaining();
+            }
+        }
+        return 0;
+    }
+
+    // Sets the status and headers. Returns the {start, end (exclusive)} bytes to send, or null when there is no body.
+    private long[] writeHeaders(String filename, long length, long lastModified,
+                                HttpServletRequest request, HttpServletResponse response) {
+        boolean immutable = CONTENT_ADDRESSED.matcher(filename).matches();
+        String eTag = "\"" + (immutable ? filename : Long.toHexString(length) + "-" + Long.toHexString(lastModified)) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, (immutable
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic()).getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (notModified(request, eTag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+
+        long start = 0;
+        long end = length;
+        long[] range = range(request, eTag, length);
+        if (range != null && range.length == 0) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return null;
+        }
+        if (range != null) {
+            start = range[0];
+            end = range[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod())) {
+            return null;
+        }
+        return new long[]{start, end};
+    }
+
+    // Straight from the cached buffer: no lookup, no open, no read
+    private void write(ByteBuffer bytes, long start, long end, HttpServletResponse response) throws IOException {
+        ByteBuffer body = bytes.position((int) start).limit((int) end);
+        WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+        while (body.hasRemaining()) {
+            output.write(body);
+        }
+    }
+
+    private boolean notModified(HttpServletRequest request, String eTag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // If-Modified-Since is ignored when If-None-Match is present
+            return matches(ifNoneMatch, eTag);
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        // HTTP dates have a one second resolution
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private boolean matches(String header, String eTag) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // {start, end (exclusive)}, an empty array when unsatisfiable, or null to send the whole file.
+    // Multiple ranges are answered with the whole file, which the RFC allows.
+    static long[] range(HttpServletRequest request, String eTag, long length) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.trim().equals(eTag)) {
+            // The client's partial copy is stale: send it the whole file
+            return null;
+        }
+
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, length - suffix);
+                end = length;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length : Math.min(length, Long.parseLong(last) + 1);
+            }
+            if (start >= length || start >= end) {
+                return new long[0];
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
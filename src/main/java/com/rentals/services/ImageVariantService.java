@@ -0,0 +1,185 @@
+package com.rentals.services;
+
+import com.rentals.storage.ImagePathResolver;
+import com.rentals.storage.ImageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Downscaled JPEG variants of rental pictures, generated once at ingestion and stored next to the original
+ * as "&lt;name&gt;-&lt;size&gt;.jpg".
+ */
+@Service
+public class ImageVariantService {
+
+    public static final String FULL = "full";
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    // Size name -> maximum width and height in pixels, largest first so each variant is scaled from the previous one
+    private final Map<String, Integer> sizes = new LinkedHashMap<>();
+    private final float quality;
+    private final ImageStore imageStore;
+    private final Path temporaryDir;
+
+    public ImageVariantService(
+            ImageStore imageStore,
+            ImagePathResolver imagePathResolver,
+            @Value("${rentals.images.thumb-size}") int thumbSize,
+            @Value("${rentals.images.medium-size}") int mediumSize,
+            @Value("${rentals.images.jpeg-quality}") float quality
+    ) {
+        sizes.put("medium", mediumSize);
+        sizes.put("thumb", thumbSize);
+        this.quality = quality;
+        this.imageStore = imageStore;
+        // Same filesystem as the stored images, so the filesystem store moves variants into place with a rename
+        this.temporaryDir = imagePathResolver.getSpoolDir();
+    }
+
+    public Set<String> getSizes() {
+        return sizes.keySet();
+    }
+
+    public void checkSize(String size) {
+        if (!FULL.equals(size) && !sizes.containsKey(size)) {
+            throw new IllegalArgumentException("Unknown image size: " + size + ". Allowed sizes are " + String.join(", ", sizes.keySet()) + ", " + FULL + ".");
+        }
+    }
+
+    public String variantName(String filename, String size) {
+        if (FULL.equals(size)) {
+            return filename;
+        }
+        int dot = filename.lastIndexOf('.');
+        return (dot < 0 ? filename : filename.substring(0, dot)) + "-" + size + ".jpg";
+    }
+
+    // The images that may answer a request for `size`, best first.
+    // No variant when the original is already small enough, or could not be decoded.
+    public List<String> candidates(String filename, String size) {
+        return FULL.equals(size) ? List.of(filename) : List.of(variantName(filename, size), filename);
+    }
+
+    // Writes every variant smaller than the original. Pictures ImageIO cannot decode are only served in full.
+    public void generate(String filename) throws IOException {
+        BufferedImage image;
+        try (InputStream input = imageStore.openStream(filename)) {
+            image = read(input, sizes.values().iterator().next());
+        }
+        if (image == null) {
+            logger.info("No variants for {}: unsupported image format", filename);
+            return;
+        }
+        for (Map.Entry<String, Integer> size : sizes.entrySet()) {
+            if (Math.max(image.getWidth(), image.getHeight()) <= size.getValue()) {
+                // Not larger than the original: the full picture is served instead
+                continue;
+            }
+            image = scale(image, size.getValue());
+            String variant = variantName(filename, size.getKey());
+            imageStore.put(variant, write(image, variant));
+        }
+    }
+
+    // Decodes with source subsampling, so a large photo never has to be held at full resolution
+    private BufferedImage read(InputStream stream, int largestSize) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(stream)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // Keep twice the largest variant so the final downscale still has detail to average
+                int subsampling = Math.max(1, longestSide / (2 * largestSize));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Halves the image until close to the target, which looks much better than a single bilinear step
+    private BufferedImage scale(BufferedImage image, int maxSize) {
+        int targetWidth;
+        int targetHeight;
+        if (image.getWidth() >= image.getHeight()) {
+            targetWidth = maxSize;
+            targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * maxSize / image.getWidth()));
+        } else {
+            targetHeight = maxSize;
+            targetWidth = Math.max(1, (int) Math.round((double) image.getWidth() * maxSize / image.getHeight()));
+        }
+
+        BufferedImage scaled = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                // JPEG has no alpha: transparent areas become white rather than black
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(scaled, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            scaled = step;
+        } while (width != targetWidth || height != targetHeight);
+        return scaled;
+    }
+
+    // Encodes into a temporary file, handed over to the store
+    private Path write(BufferedImage image, String name) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        Files.createDirectories(temporaryDir);
+        Path temporary = temporaryDir.resolve(UUID.randomUUID() + "-" + name);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(temporary.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        return temporary;
+    }
+}
@@ -1,14 +1,26 @@
 package com.rentals.services;
 
+import com.rentals.model.AuthenticatedUser;
+import com.rentals.model.User;
+import com.rentals.responses.CacheStatsResponse;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MissingClaimException;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Value;
@@ -17,33 +29,134 @@ import org.springframework.stereotype.Service;
 
 @Service
 public class JwtService {
-    @Value("${security.jwt.secret-key}")
-    private String secretKey;
 
-    @Value("${security.jwt.expiration-time}")
-    private long jwtExpiration;
+    // Claims identifying the user without a database lookup, see toPrincipal()
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String NAME_CLAIM = "name";
+    // Access tokens authenticate requests; refresh tokens are only accepted by the refresh endpoint
+    private static final String TYPE_CLAIM = "typ";
+    private static final String ACCESS_TYPE = "access";
+    private static final String REFRESH_TYPE = "refresh";
+
+    private record VerifiedToken(Claims claims, long expiresAt) {
+    }
+
+    private final long jwtExpiration;
+    private final long refreshExpiration;
+
+    // Built once: decoding the secret and building a parser for every token showed up on every request
+    private final Key signInKey;
+    private final JwtParser parser;
+
+    // Tokens already verified, by SHA-256 of the token, so the cache never holds a usable credential.
+    // Access-ordered, so the eldest entry is always the least recently used one.
+    private final LinkedHashMap<String, VerifiedToken> verified = new LinkedHashMap<>(16, 0.75f, true);
+    private final int cacheMaxSize;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public JwtService(
+            @Value("${security.jwt.secret-key}") String secretKey,
+            @Value("${security.jwt.expiration-time}") long jwtExpiration,
+            @Value("${security.jwt.refresh-expiration-time}") long refreshExpiration,
+            @Value("${security.jwt.cache.max-size}") int cacheMaxSize) {
+        this.jwtExpiration = jwtExpiration;
+        this.refreshExpiration = refreshExpiration;
+        this.signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        // Thread-safe once built
+        this.parser = Jwts.parserBuilder().setSigningKey(signInKey).build();
+        this.cacheMaxSize = cacheMaxSize;
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = validate(token);
         return claimsResolver.apply(claims);
     }
 
+    // Verifies the token once and returns all its claims. Throws a JwtException when the token is
+    // malformed, badly signed or expired.
+    public Claims validate(String token) {
+        String digest = digest(token);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            VerifiedToken cached = verified.get(digest);
+            if (cached != null && cached.expiresAt() > now) {
+                hits++;
+                return cached.claims();
+            }
+            if (cached != null) {
+                verified.remove(digest);
+                evictions++;
+            }
+            misses++;
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        if (claims.getExpiration() == null) {
+            // Not issued by this service, which always sets an expiration
+            throw new MissingClaimException(null, claims, "Token has no expiration");
+        }
+        synchronized (this) {
+            verified.put(digest, new VerifiedToken(claims, claims.getExpiration().getTime()));
+            if (verified.size() > cacheMaxSize) {
+                Iterator<Map.Entry<String, VerifiedToken>> eldest = verified.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return claims;
+    }
+
+    // The user a verified token was issued to, or null for tokens issued before the user claims were added
+    public AuthenticatedUser toPrincipal(Claims claims) {
+        Integer id = claims.get(USER_ID_CLAIM, Integer.class);
+        if (id == null || claims.getSubject() == null) {
+            return null;
+        }
+        return new AuthenticatedUser(id, claims.getSubject(), claims.get(NAME_CLAIM, String.class));
+    }
+
+    public synchronized CacheStatsResponse cacheStats() {
+        return new CacheStatsResponse(hits, misses, evictions, verified.size());
+    }
+
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        return generateToken(userClaims(userDetails, ACCESS_TYPE), userDetails);
     }
 
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
         return buildToken(extraClaims, userDetails, jwtExpiration);
     }
 
+    public String generateRefreshToken(UserDetails userDetails) {
+        return buildToken(userClaims(userDetails, REFRESH_TYPE), userDetails, refreshExpiration);
+    }
+
     public long getExpirationTime() {
         return jwtExpiration;
     }
 
+    public long getRefreshExpirationTime() {
+        return refreshExpiration;
+    }
+
+    // Tokens issued before token types were introduced have none, and were access tokens
+    public boolean isAccessToken(Claims claims) {
+        String type = claims.get(TYPE_CLAIM, String.class);
+        return type == null || ACCESS_TYPE.equals(type);
+    }
+
+    public boolean isRefreshToken(Claims claims) {
+        return REFRESH_TYPE.equals(claims.get(TYPE_CLAIM, String.class));
+    }
+
     private String buildToken(
             Map<String, Object> extraClaims,
             UserDetails userDetails,
@@ -53,36 +166,39 @@ public class JwtService {
                 .builder()
                 .setClaims(extraClaims)
                 .setSubject(userDetails.getUsername())
+                // Identifies the token in the revocation list
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
+        // validate() rejects expired tokens
         final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return username.equals(userDetails.getUsername());
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private Map<String, Object> userClaims(UserDetails userDetails, String type) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(TYPE_CLAIM, type);
+        AuthenticatedUser user = userDetails instanceof User entity ? AuthenticatedUser.of(entity)
+                : userDetails instanceof AuthenticatedUser principal ? principal
+                : null;
+        if (user != null) {
+            claims.put(USER_ID_CLAIM, user.id());
+            claims.put(NAME_CLAIM, user.name());
+        }
+        return claims;
     }
 
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private String digest(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,14 @@
 package com.rentals.services;
 
 import com.rentals.dto.messages.CreateMessageDto;
+import com.rentals.exceptions.UnauthorizedException;
 import com.rentals.responses.MessageResponse;
 import com.rentals.model.Message;
 import com.rentals.model.Rental;
-import com.rentals.model.User;
+import com.rentals.model.AuthenticatedUser;
 import com.rentals.repository.MessageRepository;
 import com.rentals.repository.RentalRepository;
+import jakarta.persistence.EntityManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -16,27 +18,36 @@ public class MessageService {
 
     private final MessageRepository messageRepository;
     private final RentalRepository rentalRepository;
+    private final UserService userService;
+    private final EntityManager entityManager;
 
-    public MessageService(MessageRepository messageRepository, RentalRepository rentalRepository) {
+    public MessageService(MessageRepository messageRepository, RentalRepository rentalRepository, UserService userService, EntityManager entityManager) {
         this.messageRepository = messageRepository;
         this.rentalRepository = rentalRepository;
+        this.userService = userService;
+        this.entityManager = entityManager;
     }
 
     public MessageResponse createMessage(CreateMessageDto createMessageDto) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User authenticatedUser = (User) authentication.getPrincipal();
+        AuthenticatedUser authenticatedUser = AuthenticatedUser.from(authentication);
 
-        if (!authenticatedUser.getId().equals(createMessageDto.getUserId())) {
-            throw new IllegalArgumentException("User ID in the request does not match the authenticated user.");
+        if (authenticatedUser == null) {
+            throw new UnauthorizedException("User not authenticated");
         }
 
-        Rental rental = rentalRepository.findById(createMessageDto.getRentalId())
-                .orElseThrow(() -> new IllegalArgumentException("Rental not found with id: " + createMessageDto.getRentalId()));
+        if (!authenticatedUser.id().equals(createMessageDto.getUserId())) {
+            throw new IllegalArgumentException("User ID in the request does not match the authenticated user.");
+        }
 
+        // Only the rental_id is written: check the row exists instead of loading the rental
+        if (!rentalRepository.existsById(createMessageDto.getRentalId())) {
+            throw new IllegalArgumentException("Rental not found with id: " + createMessageDto.getRentalId());
+        }
 
         Message message = new Message();
-        message.setRental(rental);
-        message.setUser(authenticatedUser);
+        message.setRental(entityManager.getReference(Rental.class, createMessageDto.getRentalId()));
+        message.setUser(userService.getReference(authenticatedUser.id()));
         message.setMessage(createMessageDto.getMessage());
         messageRepository.save(message);
 
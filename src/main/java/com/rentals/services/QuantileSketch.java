@@ -0,0 +1,73 @@
+package com.rentals.services;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Log-bucketed quantile sketch (DDSketch): every quantile is returned within a relative error,
+ * and since buckets are plain counters, values can be removed as well as added, and two sketches
+ * with the same accuracy merge by summing their buckets.
+ */
+class QuantileSketch {
+
+    private final double gamma;
+    private final double logGamma;
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    // Values <= 0 cannot be log-bucketed
+    private long zeroCount;
+    private long count;
+
+    QuantileSketch(double relativeAccuracy) {
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    void add(double value) {
+        update(value, 1);
+    }
+
+    void remove(double value) {
+        update(value, -1);
+    }
+
+    void merge(QuantileSketch other) {
+        other.buckets.forEach((index, bucketCount) -> buckets.merge(index, bucketCount, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    long count() {
+        return count;
+    }
+
+    double quantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return 2 * Math.pow(gamma, bucket.getKey()) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, buckets.lastKey()) / (gamma + 1);
+    }
+
+    private void update(double value, long delta) {
+        count += delta;
+        if (value <= 0) {
+            zeroCount += delta;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        long bucketCount = buckets.merge(index, delta, Long::sum);
+        if (bucketCount == 0) {
+            buckets.remove(index);
+        }
+    }
+}
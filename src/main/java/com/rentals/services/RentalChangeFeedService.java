@@ -0,0 +1,238 @@
+package com.rentals.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rentals.events.RentalChangedEvent;
+import com.rentals.events.RentalsImportedEvent;
+import com.rentals.model.Rental;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events feed of created and updated rentals.
+ * Idle subscribers hold no thread: events are queued per subscriber and written by a small shared pool.
+ */
+@Service
+public class RentalChangeFeedService {
+
+    private record FeedEvent(long sequence, String name, String data) {
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<FeedEvent> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalChangeFeedService.class);
+
+    private static final FeedEvent HEARTBEAT = new FeedEvent(-1, null, null);
+
+    private final RentalMapper rentalMapper;
+    private final ObjectMapper objectMapper;
+
+    // Event ids are "<boot epoch>-<sequence>", so ids from a previous run are never mistaken for recent ones
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+    private final ArrayDeque<FeedEvent> history = new ArrayDeque<>();
+    private long sequence;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rental-feed-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${rentals.feed.buffer-size}")
+    private int bufferSize;
+
+    @Value("${rentals.feed.history-size}")
+    private int historySize;
+
+    @Value("${rentals.feed.timeout}")
+    private long timeout;
+
+    public RentalChangeFeedService(
+            RentalMapper rentalMapper,
+            ObjectMapper objectMapper,
+            @Value("${rentals.feed.sender-threads}") int senderThreads,
+            @Value("${rentals.feed.heartbeat-seconds}") long heartbeatSeconds
+    ) {
+        this.rentalMapper = rentalMapper;
+        this.objectMapper = objectMapper;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "rental-feed-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Heartbeats keep proxies from closing idle connections and reveal dead clients
+        heartbeats.scheduleAtFixedRate(() -> subscribers.forEach(subscriber -> enqueue(subscriber, HEARTBEAT)),
+                heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+
+        synchronized (history) {
+            subscribers.add(subscriber);
+            if (lastEventId != null) {
+                replay(subscriber, lastEventId);
+            }
+        }
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @EventListener
+    public void onRentalChanged(RentalChangedEvent event) {
+        publish(event.created() ? "created" : "updated", event.rental());
+    }
+
+    // One event per import batch rather than one per row: a batch of a thousand rows would otherwise overflow
+    // every subscriber queue and the history at once. Clients fetch the rentals through the delta sync.
+    @EventListener
+    public void onRentalsImported(RentalsImportedEvent event) {
+        if (event.rentals().isEmpty()) {
+            return;
+        }
+        Map<String, Object> batch = new LinkedHashMap<>();
+        batch.put("count", event.rentals().size());
+        batch.put("ids", event.rentals().stream().map(Rental::getId).toList());
+        try {
+            publish("imported", objectMapper.writeValueAsString(batch));
+        } catch (JsonProcessingException e) {
+            logger.error("Error while serializing an import batch for the change feed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private void publish(String name, Rental rental) {
+        String data;
+        try {
+            // Serialized once, whatever the number of subscribers
+            data = objectMapper.writeValueAsString(rentalMapper.toResponse(rental));
+        } catch (JsonProcessingException e) {
+            logger.error("Error while serializing rental {} for the change feed: {}", rental.getId(), e.getMessage());
+            return;
+        }
+        publish(name, data);
+    }
+
+    private void publish(String name, String data) {
+        synchronized (history) {
+            FeedEvent event = new FeedEvent(++sequence, name, data);
+            history.addLast(event);
+            if (history.size() > historySize) {
+                history.removeFirst();
+            }
+            subscribers.forEach(subscriber -> enqueue(subscriber, event));
+        }
+    }
+
+    // Replays what the client missed, or asks it to reload when the gap is no longer in the history
+    private void replay(Subscriber subscriber, String lastEventId) {
+        long lastSequence = parseSequence(lastEventId);
+        FeedEvent oldest = history.peekFirst();
+        boolean outOfHistory = oldest != null && lastSequence < oldest.sequence() - 1;
+        if (lastSequence < 0 || outOfHistory || sequence - lastSequence > bufferSize) {
+            enqueue(subscriber, new FeedEvent(sequence, "reset", "{}"));
+            return;
+        }
+        for (FeedEvent event : history) {
+            if (event.sequence() > lastSequence) {
+                enqueue(subscriber, event);
+            }
+        }
+    }
+
+    private long parseSequence(String lastEventId) {
+        int separator = lastEventId.indexOf('-');
+        if (separator < 0 || !lastEventId.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, FeedEvent event) {
+        if (!subscriber.queue.offer(event)) {
+            // The client does not keep up: drop it, it will resume from its Last-Event-ID
+            logger.info("Evicting slow change feed subscriber");
+            subscribers.remove(subscriber);
+            subscriber.emitter.complete();
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            FeedEvent event;
+            while ((event = subscriber.queue.poll()) != null) {
+                if (event == HEARTBEAT) {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(epoch + "-" + event.sequence())
+                            .name(event.name())
+                            .data(event.data(), MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+            subscriber.queue.clear();
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // An event may have been queued after the last poll but before the flag was cleared
+        if (!subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+}
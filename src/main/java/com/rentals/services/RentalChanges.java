@@ -0,0 +1,8 @@
+package com.rentals.services;
+
+import com.rentals.model.Rental;
+
+import java.util.List;
+
+public record RentalChanges(List<Rental> rentals, long nextSince, boolean hasMore) {
+}
@@ -0,0 +1,330 @@
+package com.rentals.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rentals.dto.rentals.ImportRentalDto;
+import com.rentals.model.Rental;
+import com.rentals.repository.RentalChangeSequenceRepository;
+import com.rentals.responses.ImportReportResponse;
+import com.rentals.responses.ImportRowError;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports rentals from NDJSON or CSV. Rows are parsed and validated one at a time and inserted
+ * with plain JDBC batches, since Hibernate cannot batch inserts on IDENTITY ids.
+ */
+@Service
+public class RentalImportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalImportService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO rentals "
+            + "(name, surface, price, picture, description, owner_id, created_at, updated_at, version, change_seq) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, ?)";
+
+    // Keeps the report bounded when a whole file is malformed
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final RentalService rentalService;
+    private final RentalChangeSequenceRepository rentalChangeSequenceRepository;
+
+    @Value("${rentals.import.batch-size}")
+    private int batchSize;
+
+    public RentalImportService(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            Validator validator,
+            RentalService rentalService,
+            RentalChangeSequenceRepository rentalChangeSequenceRepository
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.rentalService = rentalService;
+        this.rentalChangeSequenceRepository = rentalChangeSequenceRepository;
+    }
+
+    private final class ImportRun {
+        private final Integer ownerId;
+        private final List<ImportRentalDto> batch = new ArrayList<>();
+        private final List<Long> batchRows = new ArrayList<>();
+        private final List<ImportRowError> errors = new ArrayList<>();
+        private long imported;
+        private long rejected;
+
+        private ImportRun(Integer ownerId) {
+            this.ownerId = ownerId;
+        }
+
+        private void accept(long row, ImportRentalDto dto) {
+            Set<ConstraintViolation<ImportRentalDto>> violations = validator.validate(dto);
+            if (!violations.isEmpty()) {
+                reject(row, violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; ")));
+                return;
+            }
+            batch.add(dto);
+            batchRows.add(row);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void reject(long row, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportRowError(row, message));
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Rental> inserted = new ArrayList<>();
+            insert(batch, batchRows, inserted);
+            imported += inserted.size();
+            if (!inserted.isEmpty()) {
+                rentalService.rentalsImported(inserted);
+            }
+            batch.clear();
+            batchRows.clear();
+        }
+
+        // A failed batch is split in halves until the failing rows are isolated, so one bad row only
+        // costs about log2(batch-size) extra transactions and the valid rows are still imported
+        private void insert(List<ImportRentalDto> dtos, List<Long> rows, List<Rental> inserted) {
+            try {
+                inserted.addAll(transactionTemplate.execute(status -> insertBatch(dtos, ownerId)));
+            } catch (DataAccessException e) {
+                // Splitting does not help when the database itself is unreachable
+                if (dtos.size() == 1 || e instanceof DataAccessResourceFailureException) {
+                    logger.error("Import rows {} to {} rejected: {}", rows.get(0), rows.get(rows.size() - 1), e.getMostSpecificCause().getMessage());
+                    for (Long row : rows) {
+                        reject(row, "Database error: " + e.getMostSpecificCause().getMessage());
+                    }
+                    return;
+                }
+                int half = dtos.size() / 2;
+                insert(dtos.subList(0, half), rows.subList(0, half), inserted);
+                insert(dtos.subList(half, dtos.size()), rows.subList(half, rows.size()), inserted);
+            }
+        }
+    }
+
+    public ImportReportResponse importRentals(InputStream input, Format format, Integer ownerId) throws IOException {
+        ImportRun run = new ImportRun(ownerId);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            readCsv(reader, run);
+        } else {
+            readNdjson(reader, run);
+        }
+        run.flush();
+
+        logger.info("Import finished: {} rentals imported, {} rejected", run.imported, run.rejected);
+        return new ImportReportResponse(run.imported, run.rejected, run.errors);
+    }
+
+    private void readNdjson(BufferedReader reader, ImportRun run) throws IOException {
+        long row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            row++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                run.accept(row, objectMapper.readValue(line, ImportRentalDto.class));
+            } catch (JsonProcessingException e) {
+                run.reject(row, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private void readCsv(BufferedReader reader, ImportRun run) throws IOException {
+        List<String> header = readCsvRecord(reader);
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("surface") || !columns.containsKey("price")) {
+            throw new IllegalArgumentException("The CSV header must contain the name, surface and price columns.");
+        }
+
+        long row = 0;
+        List<String> fields;
+        while ((fields = readCsvRecord(reader)) != null) {
+            row++;
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            ImportRentalDto dto = new ImportRentalDto();
+            try {
+                dto.setName(field(fields, columns, "name"));
+                dto.setSurface(decimal(field(fields, columns, "surface"), "surface"));
+                dto.setPrice(decimal(field(fields, columns, "price"), "price"));
+                dto.setDescription(field(fields, columns, "description"));
+                dto.setPicture(field(fields, columns, "picture"));
+            } catch (IllegalArgumentException e) {
+                run.reject(row, e.getMessage());
+                continue;
+            }
+            run.accept(row, dto);
+        }
+    }
+
+    private String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    private BigDecimal decimal(String value, String name) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + name + ": " + value);
+        }
+    }
+
+    // Reads one RFC 4180 record; quoted fields may contain commas, quotes and line breaks
+    static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean read = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            read = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!read) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private List<Rental> insertBatch(List<ImportRentalDto> rows, Integer ownerId) {
+        LocalDateTime now = LocalDateTime.now();
+        long firstChangeSeq = rentalChangeSequenceRepository.allocate(rows.size()) - rows.size() + 1;
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        ImportRentalDto row = rows.get(i);
+                        statement.setString(1, row.getName());
+                        statement.setBigDecimal(2, row.getSurface());
+                        statement.setBigDecimal(3, row.getPrice());
+                        statement.setString(4, row.getPicture());
+                        statement.setString(5, row.getDescription());
+                        statement.setInt(6, ownerId);
+                        statement.setObject(7, now);
+                        statement.setObject(8, now);
+                        statement.setLong(9, firstChangeSeq + i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                },
+                keyHolder
+        );
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Rental> inserted = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            ImportRentalDto row = rows.get(i);
+            Rental rental = new Rental();
+            rental.setId(((Number) keys.get(i).values().iterator().next()).intValue());
+            rental.setName(row.getName());
+            rental.setSurface(row.getSurface());
+            rental.setPrice(row.getPrice());
+            rental.setPicture(row.getPicture());
+            rental.setDescription(row.getDescription());
+            rental.setOwnerId(ownerId);
+            rental.setCreatedAt(now);
+            rental.setUpdatedAt(now);
+            rental.setVersion(0L);
+            rental.setChangeSeq(firstChangeSeq + i);
+            inserted.add(rental);
+        }
+        return inserted;
+    }
+}
@@ -0,0 +1,116 @@
+package com.rentals.services;
+
+import com.rentals.model.PictureStatus;
+import com.rentals.model.Rental;
+import com.rentals.responses.RentalResponse;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+public class RentalMapper {
+
+    // Response field -> JPQL path, used to restrict both the selected columns and the emitted JSON
+    private static final Map<String, String> FIELD_PATHS = new LinkedHashMap<>();
+
+    static {
+        FIELD_PATHS.put("id", "r.id");
+        FIELD_PATHS.put("name", "r.name");
+        FIELD_PATHS.put("surface", "r.surface");
+        FIELD_PATHS.put("price", "r.price");
+        FIELD_PATHS.put("picture", "r.picture");
+        FIELD_PATHS.put("picture_status", "r.pictureStatus");
+        FIELD_PATHS.put("description", "r.description");
+        FIELD_PATHS.put("owner_id", "r.ownerId");
+        FIELD_PATHS.put("created_at", "r.createdAt");
+        FIELD_PATHS.put("updated_at", "r.updatedAt");
+    }
+
+    private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+    public RentalResponse toResponse(Rental rental) {
+        return new RentalResponse(
+                rental.getId(),
+                rental.getName(),
+                rental.getSurface(),
+                rental.getPrice(),
+                rental.getPicture(),
+                format(rental.getPictureStatus()),
+                rental.getDescription(),
+                rental.getOwnerId(),
+                format(rental.getCreatedAt()),
+                format(rental.getUpdatedAt())
+        );
+    }
+
+    // Parses a comma separated "fields" parameter; null means every field
+    public List<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!FIELD_PATHS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name + ". Allowed fields are " + String.join(", ", FIELD_PATHS.keySet()) + ".");
+            }
+            parsed.add(name);
+        }
+        return new ArrayList<>(parsed);
+    }
+
+    public List<String> toPaths(List<String> fields) {
+        return fields.stream().map(FIELD_PATHS::get).toList();
+    }
+
+    public Map<String, Object> toSparseResponse(Rental rental, List<String> fields) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        for (String field : fields) {
+            response.put(field, switch (field) {
+                case "id" -> rental.getId();
+                case "name" -> rental.getName();
+                case "surface" -> rental.getSurface();
+                case "price" -> rental.getPrice();
+                case "picture" -> rental.getPicture();
+                case "picture_status" -> format(rental.getPictureStatus());
+                case "description" -> rental.getDescription();
+                case "owner_id" -> rental.getOwnerId();
+                case "created_at" -> format(rental.getCreatedAt());
+                case "updated_at" -> format(rental.getUpdatedAt());
+                default -> throw new IllegalArgumentException("Unknown field: " + field);
+            });
+        }
+        return response;
+    }
+
+    // Row as returned by RentalProjectionRepository: the id, then one value per field
+    public Map<String, Object> toSparseResponse(List<String> fields, Object[] row) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            Object value = row[i + 1];
+            if (value instanceof LocalDateTime date) {
+                value = format(date);
+            } else if (value instanceof PictureStatus status) {
+                value = format(status);
+            }
+            response.put(fields.get(i), value);
+        }
+        return response;
+    }
+
+    private String format(LocalDateTime date) {
+        return date != null ? date.format(dateFormatter) : null;
+    }
+
+    private String format(PictureStatus status) {
+        return status != null ? status.name().toLowerCase(Locale.ROOT) : null;
+    }
+}
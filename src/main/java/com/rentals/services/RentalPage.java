@@ -0,0 +1,6 @@
+package com.rentals.services;
+
+import java.util.List;
+
+public record RentalPage<T>(List<T> rentals, String nextCursor) {
+}
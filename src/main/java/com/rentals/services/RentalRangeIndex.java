@@ -0,0 +1,327 @@
+package com.rentals.services;
+
+import com.rentals.dto.rentals.RentalFilterDto;
+import com.rentals.dto.rentals.RentalMeasuresView;
+import com.rentals.events.RentalChangedEvent;
+import com.rentals.events.RentalsImportedEvent;
+import com.rentals.model.Rental;
+import com.rentals.repository.RentalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Column store of rental prices (in cents) and surfaces (in hundredths), each kept as a sorted
+ * primitive array. Filtered pages are read in id order: by walking the indexed ids for broad filters, or by
+ * collecting the narrowest range, found with binary searches, into a bitset keyed by id for selective ones.
+ */
+@Service
+public class RentalRangeIndex {
+
+    // Values sorted ascending, with the slot of the rental holding each value
+    private static final class SortedColumn {
+        private long[] values = new long[1024];
+        private int[] slots = new int[1024];
+        private int size;
+
+        void insert(long value, int slot) {
+            int position = upperBound(value);
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(values, position, values, position + 1, size - position);
+            System.arraycopy(slots, position, slots, position + 1, size - position);
+            values[position] = value;
+            slots[position] = slot;
+            size++;
+        }
+
+        // Merges a batch of new slots in a single pass instead of shifting the arrays once per row
+        void insertAll(long[] columnValues, int[] newSlots) {
+            int[] batch = Arrays.stream(newSlots).boxed()
+                    .sorted((a, b) -> Long.compare(columnValues[a], columnValues[b]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            long[] mergedValues = new long[Math.max(values.length, size + batch.length)];
+            int[] mergedSlots = new int[mergedValues.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < size || j < batch.length) {
+                if (j == batch.length || (i < size && values[i] <= columnValues[batch[j]])) {
+                    mergedValues[k] = values[i];
+                    mergedSlots[k++] = slots[i++];
+                } else {
+                    mergedValues[k] = columnValues[batch[j]];
+                    mergedSlots[k++] = batch[j++];
+                }
+            }
+            values = mergedValues;
+            slots = mergedSlots;
+            size = k;
+        }
+
+        void remove(long value, int slot) {
+            for (int position = lowerBound(value); position < size && values[position] == value; position++) {
+                if (slots[position] == slot) {
+                    System.arraycopy(values, position + 1, values, position, size - position - 1);
+                    System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        // Number of values within [min, max]: two binary searches
+        int count(long min, long max) {
+            return Math.max(0, upperBound(max) - lowerBound(min));
+        }
+
+        // First position whose value is >= key
+        private int lowerBound(long key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // First position whose value is > key
+        private int upperBound(long key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] <= key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalRangeIndex.class);
+
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final RentalRepository rentalRepository;
+
+    // Slot of each rental by id, and the ids present: pages are read by walking ids in order
+    private int[] slotsById = new int[1024];
+    private final BitSet indexedIds = new BitSet();
+    private int[] ids = new int[1024];
+    private long[] prices = new long[1024];
+    private long[] surfaces = new long[1024];
+    private int slotCount;
+    private final SortedColumn byPrice = new SortedColumn();
+    private final SortedColumn bySurface = new SortedColumn();
+
+    private volatile boolean ready;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public RentalRangeIndex(RentalRepository rentalRepository) {
+        this.rentalRepository = rentalRepository;
+    }
+
+    // Until the index is seeded, callers fall back to database queries
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void buildIndex() {
+        long start = System.currentTimeMillis();
+        try (Stream<RentalMeasuresView> rows = rentalRepository.streamMeasures()) {
+            rows.forEach(row -> put(row.getId(), row.getPrice(), row.getSurface()));
+        }
+        ready = true;
+        logger.info("Range index built with {} rentals in {} ms", slotCount, System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public void onRentalChanged(RentalChangedEvent event) {
+        put(event.rental().getId(), event.rental().getPrice(), event.rental().getSurface());
+    }
+
+    // The first `count` ids greater than afterId (null for the first page) matching every bound of the filter,
+    // ascending. A page costs about what it returns, not the size of the whole match set.
+    public int[] query(RentalFilterDto filter, Integer afterId, int count) {
+        long minPrice = lowerBound(filter.getMinPrice());
+        long maxPrice = upperBound(filter.getMaxPrice());
+        long minSurface = lowerBound(filter.getMinSurface());
+        long maxSurface = upperBound(filter.getMaxSurface());
+        if (afterId != null && afterId == Integer.MAX_VALUE) {
+            return new int[0];
+        }
+        int fromId = afterId == null ? 0 : Math.max(0, afterId + 1);
+
+        lock.readLock().lock();
+        try {
+            // The narrowest bounded column, and how many rentals fall in its range
+            SortedColumn narrowest = null;
+            long min = 0;
+            long max = 0;
+            int inRange = slotCount;
+            if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+                int priceCount = byPrice.count(minPrice, maxPrice);
+                if (priceCount <= inRange) {
+                    narrowest = byPrice;
+                    min = minPrice;
+                    max = maxPrice;
+                    inRange = priceCount;
+                }
+            }
+            if (filter.getMinSurface() != null || filter.getMaxSurface() != null) {
+                int surfaceCount = bySurface.count(minSurface, maxSurface);
+                if (surfaceCount < inRange) {
+                    narrowest = bySurface;
+                    min = minSurface;
+                    max = maxSurface;
+                    inRange = surfaceCount;
+                }
+            }
+
+            int[] page = new int[Math.min(count, inRange)];
+            int found = 0;
+            if (narrowest != null && (long) inRange * inRange < (long) count * slotCount) {
+                // Selective filter: walking ids would visit about count * slotCount / inRange rentals before
+                // filling the page, more than collecting the range itself
+                BitSet matchingIds = new BitSet();
+                for (int position = narrowest.lowerBound(min); position < narrowest.size && narrowest.values[position] <= max; position++) {
+                    int slot = narrowest.slots[position];
+                    if (ids[slot] >= fromId && matches(slot, minPrice, maxPrice, minSurface, maxSurface)) {
+                        matchingIds.set(ids[slot]);
+                    }
+                }
+                for (int id = matchingIds.nextSetBit(fromId); id >= 0 && found < page.length; id = matchingIds.nextSetBit(id + 1)) {
+                    page[found++] = id;
+                }
+            } else {
+                for (int id = indexedIds.nextSetBit(fromId); id >= 0 && found < page.length; id = indexedIds.nextSetBit(id + 1)) {
+                    if (matches(slotsById[id], minPrice, maxPrice, minSurface, maxSurface)) {
+                        page[found++] = id;
+                    }
+                }
+            }
+            return found == page.length ? page : Arrays.copyOf(page, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onRentalsImported(RentalsImportedEvent event) {
+        lock.writeLock().lock();
+        try {
+            int[] newSlots = new int[event.rentals().size()];
+            int count = 0;
+            for (Rental rental : event.rentals()) {
+                long price = scale(rental.getPrice(), RoundingMode.HALF_UP);
+                long surface = scale(rental.getSurface(), RoundingMode.HALF_UP);
+                if (indexedIds.get(rental.getId())) {
+                    update(slotsById[rental.getId()], price, surface);
+                } else {
+                    newSlots[count++] = append(rental.getId(), price, surface);
+                }
+            }
+            newSlots = Arrays.copyOf(newSlots, count);
+            byPrice.insertAll(prices, newSlots);
+            bySurface.insertAll(surfaces, newSlots);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Integer id, BigDecimal price, BigDecimal surface) {
+        long scaledPrice = scale(price, RoundingMode.HALF_UP);
+        long scaledSurface = scale(surface, RoundingMode.HALF_UP);
+
+        lock.writeLock().lock();
+        try {
+            if (!indexedIds.get(id)) {
+                int slot = append(id, scaledPrice, scaledSurface);
+                byPrice.insert(scaledPrice, slot);
+                bySurface.insert(scaledSurface, slot);
+            } else {
+                update(slotsById[id], scaledPrice, scaledSurface);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean matches(int slot, long minPrice, long maxPrice, long minSurface, long maxSurface) {
+        return prices[slot] >= minPrice && prices[slot] <= maxPrice
+                && surfaces[slot] >= minSurface && surfaces[slot] <= maxSurface;
+    }
+
+    // Adds a row to the columns only; the caller inserts it into the sorted columns
+    private int append(Integer id, long price, long surface) {
+        int slot = slotCount++;
+        if (slot == ids.length) {
+            ids = Arrays.copyOf(ids, slot * 2);
+            prices = Arrays.copyOf(prices, slot * 2);
+            surfaces = Arrays.copyOf(surfaces, slot * 2);
+        }
+        if (id >= slotsById.length) {
+            slotsById = Arrays.copyOf(slotsById, Math.max(id + 1, slotsById.length * 2));
+        }
+        slotsById[id] = slot;
+        indexedIds.set(id);
+        ids[slot] = id;
+        prices[slot] = price;
+        surfaces[slot] = surface;
+        return slot;
+    }
+
+    private void update(int slot, long price, long surface) {
+        byPrice.remove(prices[slot], slot);
+        bySurface.remove(surfaces[slot], slot);
+        prices[slot] = price;
+        surfaces[slot] = surface;
+        byPrice.insert(price, slot);
+        bySurface.insert(surface, slot);
+    }
+
+    // Bounds are rounded inwards so that scaling never widens the requested range
+    private long lowerBound(BigDecimal value) {
+        return value == null ? Long.MIN_VALUE : scale(value, RoundingMode.CEILING);
+    }
+
+    private long upperBound(BigDecimal value) {
+        return value == null ? Long.MAX_VALUE : scale(value, RoundingMode.FLOOR);
+    }
+
+    // Values beyond the long range (e.g. minPrice=1e30) are clamped: no stored price or surface is beyond them
+    private long scale(BigDecimal value, RoundingMode roundingMode) {
+        BigDecimal scaled = value.movePointRight(2).setScale(0, roundingMode);
+        if (scaled.compareTo(LONG_MAX) > 0) {
+            return Long.MAX_VALUE;
+        }
+        if (scaled.compareTo(LONG_MIN) < 0) {
+            return Long.MIN_VALUE;
+        }
+        return scaled.longValueExact();
+    }
+}
@@ -0,0 +1,172 @@
+package com.rentals.services;
+
+import com.rentals.events.RentalChangedEvent;
+import com.rentals.events.RentalsImportedEvent;
+import com.rentals.model.Rental;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over rental names and descriptions, ranked with BM25.
+ * Seeded from the database at startup and kept in sync through {@link RentalChangedEvent}.
+ */
+@Service
+public class RentalSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalSearchService.class);
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // A term in the name counts as much as this many occurrences in the description
+    private static final int NAME_WEIGHT = 3;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final RentalService rentalService;
+
+    // term -> (rental id -> weighted term frequency)
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+    private final Map<Integer, Integer> documentLengths = new HashMap<>();
+    private final Map<Integer, Set<String>> documentTerms = new HashMap<>();
+    private long totalLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public RentalSearchService(RentalService rentalService) {
+        this.rentalService = rentalService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        long start = System.currentTimeMillis();
+        rentalService.streamAllRentals(this::index);
+        logger.info("Search index built with {} rentals in {} ms", documentLengths.size(), System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public void onRentalChanged(RentalChangedEvent event) {
+        index(event.rental());
+    }
+
+    @EventListener
+    public void onRentalsImported(RentalsImportedEvent event) {
+        event.rentals().forEach(this::index);
+    }
+
+    public List<Integer> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documentLengths.size();
+            if (documentCount == 0) {
+                return Collections.emptyList();
+            }
+            double averageLength = (double) totalLength / documentCount;
+
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Integer, Integer> postingList = postings.get(term);
+                if (postingList == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documentCount - postingList.size() + 0.5) / (postingList.size() + 0.5));
+                postingList.forEach((id, frequency) -> {
+                    double norm = K1 * (1 - B + B * documentLengths.get(id) / averageLength);
+                    scores.merge(id, idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+                });
+            }
+
+            // Min-heap of the best `limit` hits
+            PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+                top.offer(score);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            List<Integer> ids = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                ids.add(top.poll().getKey());
+            }
+            Collections.reverse(ids);
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void index(Rental rental) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : tokenize(rental.getName())) {
+            frequencies.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(rental.getDescription())) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        int length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+
+        lock.writeLock().lock();
+        try {
+            remove(rental.getId());
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, key -> new HashMap<>()).put(rental.getId(), frequency));
+            documentTerms.put(rental.getId(), frequencies.keySet());
+            documentLengths.put(rental.getId(), length);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Integer id) {
+        Set<String> terms = documentTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Integer, Integer> postingList = postings.get(term);
+            postingList.remove(id);
+            if (postingList.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= documentLengths.remove(id);
+    }
+
+    // Lower-cases and strips accents, so "Château" matches "chateau"
+    private List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (token.length() > 1) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
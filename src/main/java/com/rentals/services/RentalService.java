@@ -1,38 +1,325 @@
 package com.rentals.services;
 
+import com.rentals.cache.RentalCache;
+import com.rentals.dto.rentals.RentalFilterDto;
+import com.rentals.events.RentalChangedEvent;
+import com.rentals.events.RentalsImportedEvent;
+import com.rentals.model.PictureStatus;
 import com.rentals.model.Rental;
+import com.rentals.repository.ImageBlobRepository;
+import com.rentals.repository.RentalChangeSequenceRepository;
 import com.rentals.repository.RentalRepository;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
 public class RentalService {
 
     private static final Logger logger = LoggerFactory.getLogger(RentalService.class);
+
+    // Content-addressed pictures are named <sha-256><extension>; older ones have random UUID names and no blob
+    private static final Pattern BLOB_FILENAME = Pattern.compile("([0-9a-f]{64})(\\.[A-Za-z0-9]+)?");
     private final RentalRepository rentalRepository;
+    private final EntityManager entityManager;
+    private final RentalCache rentalCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RentalRangeIndex rentalRangeIndex;
+    private final RentalChangeSequenceRepository rentalChangeSequenceRepository;
+    private final ImageBlobRepository imageBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Catalog-wide version used for list ETags. The startup time makes versions from a previous run unreachable.
+    private final long catalogEpoch = System.currentTimeMillis();
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    @Value("${rentals.page.default-size}")
+    private int defaultPageSize;
 
-    public RentalService(RentalRepository rentalRepository) {
+    @Value("${rentals.page.max-size}")
+    private int maxPageSize;
+
+    public RentalService(
+            RentalRepository rentalRepository,
+            EntityManager entityManager,
+            RentalCache rentalCache,
+            ApplicationEventPublisher eventPublisher,
+            RentalRangeIndex rentalRangeIndex,
+            RentalChangeSequenceRepository rentalChangeSequenceRepository,
+            ImageBlobRepository imageBlobRepository,
+            PlatformTransactionManager transactionManager
+    ) {
         this.rentalRepository = rentalRepository;
+        this.entityManager = entityManager;
+        this.rentalCache = rentalCache;
+        this.eventPublisher = eventPublisher;
+        this.rentalRangeIndex = rentalRangeIndex;
+        this.rentalChangeSequenceRepository = rentalChangeSequenceRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public List<Rental> findAllRentals() {
+        List<Rental> cached = rentalCache.getAll();
+        if (cached != null) {
+            return cached;
+        }
+        long generation = rentalCache.generation();
         logger.info("Fetching all rentals from the database");
-        return (List<Rental>) rentalRepository.findAll();
+        List<Rental> rentals = (List<Rental>) rentalRepository.findAll();
+        rentalCache.putAllIfFresh(rentals, generation);
+        return rentals;
+    }
+
+    public RentalPage<Rental> findRentalsPage(RentalFilterDto filter, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        Integer afterId = decodeCursor(cursor);
+        logger.info("Fetching {} rentals after ID: {}", pageSize, afterId);
+
+        List<Rental> rows;
+        if (hasRangeFilter(filter) && rentalRangeIndex.isReady()) {
+            rows = findRentalsByIds(indexedPageIds(filter, afterId, pageSize + 1));
+        } else {
+            // One extra row tells us whether another page exists without a count query
+            rows = rentalRepository.findPageAfter(
+                    afterId,
+                    filter.getMinPrice(),
+                    filter.getMaxPrice(),
+                    filter.getMinSurface(),
+                    filter.getMaxSurface(),
+                    PageRequest.of(0, pageSize + 1)
+            );
+        }
+        return toPage(rows, pageSize, Rental::getId);
+    }
+
+    // Same page as findRentalsPage, but only the given JPQL paths are selected. Each row starts with the id.
+    public RentalPage<Object[]> findRentalsPageProjection(RentalFilterDto filter, String cursor, Integer limit, List<String> paths) {
+        int pageSize = pageSize(limit);
+        Integer afterId = decodeCursor(cursor);
+        logger.info("Fetching {} projected rentals after ID: {}", pageSize, afterId);
+
+        List<Object[]> rows;
+        if (hasRangeFilter(filter) && rentalRangeIndex.isReady()) {
+            rows = rentalRepository.findProjectionByIds(paths, indexedPageIds(filter, afterId, pageSize + 1));
+        } else {
+            rows = rentalRepository.findPageProjection(paths, afterId, filter, pageSize + 1);
+        }
+        return toPage(rows, pageSize, row -> (Integer) row[0]);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllRentals(Consumer<Rental> consumer) {
+        logger.info("Streaming all rentals from the database");
+        try (Stream<Rental> rentals = rentalRepository.streamAll()) {
+            rentals.forEach(rental -> {
+                consumer.accept(rental);
+                // Keep the persistence context from growing with the catalog
+                entityManager.detach(rental);
+            });
+        }
     }
 
     public Rental findRentalById(Integer id) {
+        Rental cached = rentalCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = rentalCache.generation();
         logger.info("Fetching rental with ID: {}", id);
+        Rental rental = rentalRepository.findById(id).orElse(null);
+        if (rental != null) {
+            rentalCache.putIfFresh(rental, generation);
+        }
+        return rental;
+    }
+
+    // Returns the rentals in the order of the given ids, loading cache misses in a single query
+    public List<Rental> findRentalsByIds(List<Integer> ids) {
+        Map<Integer, Rental> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Rental cached = rentalCache.get(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long generation = rentalCache.generation();
+            for (Rental rental : rentalRepository.findAllById(missing)) {
+                rentalCache.putIfFresh(rental, generation);
+                found.put(rental.getId(), rental);
+            }
+        }
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    // Bypasses the cache: cached instances are shared between requests and must not be mutated
+    public Rental findRentalForUpdate(Integer id) {
+        logger.info("Fetching rental with ID: {} for update", id);
         return rentalRepository.findById(id).orElse(null);
     }
 
+    public String getCatalogVersion() {
+        return Long.toHexString(catalogEpoch) + "." + catalogVersion.get();
+    }
+
     public void createRental(Rental rental) {
-        rentalRepository.save(rental);
+        saved(saveWithChangeSeq(rental), true);
     }
 
     public void updateRental(Rental rental) {
-        rentalRepository.save(rental);
+        saved(saveWithChangeSeq(rental), false);
+    }
+
+    public List<Rental> findRentalsWithPendingPicture() {
+        return rentalRepository.findByPictureStatus(PictureStatus.PENDING);
+    }
+
+    // Applies the outcome of a background picture ingestion (a null image means it failed).
+    // Returns false when the rental is gone or a newer upload has replaced this one meanwhile.
+    public boolean pictureIngested(Integer id, String uploadId, StoredImage image) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Rental rental = transactionTemplate.execute(status -> {
+                    Rental current = rentalRepository.findById(id).orElse(null);
+                    if (current == null || !uploadId.equals(current.getPendingPicture())) {
+                        return null;
+                    }
+                    current.setPendingPicture(null);
+                    if (image != null) {
+                        // Reference counts change in the same transaction as the pictures pointing to the blobs
+                        imageBlobRepository.addReference(image.hash(), image.filename(), image.size());
+                        String previousHash = blobHash(current.getPicture());
+                        if (previousHash != null) {
+                            imageBlobRepository.removeReference(previousHash);
+                        }
+                        current.setPicture(image.url());
+                        current.setPictureStatus(PictureStatus.READY);
+                    } else {
+                        current.setPictureStatus(PictureStatus.FAILED);
+                    }
+                    current.setUpdatedAt(LocalDateTime.now());
+                    return saveWithChangeSeq(current);
+                });
+                if (rental == null) {
+                    return false;
+                }
+                saved(rental, false);
+                return true;
+            } catch (OptimisticLockingFailureException e) {
+                // Lost a race with a user edit: reload and try again
+                if (attempt == 3) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public RentalChanges findChangesSince(long since, Integer limit) {
+        int pageSize = pageSize(limit);
+        logger.info("Fetching {} rentals changed after sequence {}", pageSize, since);
+        List<Rental> rows = rentalRepository.findByChangeSeqGreaterThanOrderByChangeSeqAsc(since, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        List<Rental> changes = hasMore ? rows.subList(0, pageSize) : rows;
+        long nextSince = changes.isEmpty() ? since : changes.get(changes.size() - 1).getChangeSeq();
+        return new RentalChanges(changes, nextSince, hasMore);
+    }
+
+    // Listeners are notified by saved() once this transaction has committed
+    private Rental saveWithChangeSeq(Rental rental) {
+        return transactionTemplate.execute(status -> {
+            rental.setChangeSeq(rentalChangeSequenceRepository.allocate(1));
+            return rentalRepository.save(rental);
+        });
+    }
+
+    public void rentalsImported(List<Rental> rentals) {
+        rentalCache.catalogChanged();
+        catalogVersion.incrementAndGet();
+        eventPublisher.publishEvent(new RentalsImportedEvent(rentals));
+    }
+
+    private void saved(Rental rental, boolean created) {
+        rentalCache.written(rental);
+        catalogVersion.incrementAndGet();
+        eventPublisher.publishEvent(new RentalChangedEvent(rental, created));
+    }
+
+    private boolean hasRangeFilter(RentalFilterDto filter) {
+        return filter.getMinPrice() != null || filter.getMaxPrice() != null
+                || filter.getMinSurface() != null || filter.getMaxSurface() != null;
+    }
+
+    private List<Integer> indexedPageIds(RentalFilterDto filter, Integer afterId, int count) {
+        return Arrays.stream(rentalRangeIndex.query(filter, afterId, count)).boxed().toList();
+    }
+
+    // The blob of a picture URL, or null for pictures stored before content addressing
+    private String blobHash(String picture) {
+        if (picture == null) {
+            return null;
+        }
+        Matcher matcher = BLOB_FILENAME.matcher(picture.substring(picture.lastIndexOf('/') + 1));
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    // The requested page size, or the default one; bounded by rentals.page.max-size
+    public int pageSize(Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : limit;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new IllegalArgumentException("The limit must be between 1 and " + maxPageSize + ".");
+        }
+        return pageSize;
+    }
+
+    private <T> RentalPage<T> toPage(List<T> rows, int pageSize, Function<T, Integer> idOf) {
+        if (rows.size() <= pageSize) {
+            return new RentalPage<>(rows, null);
+        }
+        List<T> page = rows.subList(0, pageSize);
+        return new RentalPage<>(page, encodeCursor(idOf.apply(page.get(pageSize - 1))));
+    }
+
+    private String encodeCursor(Integer id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(id.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Integer decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid pagination cursor.");
+        }
     }
 }
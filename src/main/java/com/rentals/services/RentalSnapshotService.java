@@ -0,0 +1,148 @@
+package com.rentals.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rentals.events.RentalChangedEvent;
+import com.rentals.events.RentalsImportedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the full rentals catalog serialized as JSON bytes, rebuilt in the background after each write,
+ * so GET /api/rentals/all can be answered without touching the database or Jackson.
+ */
+@Service
+public class RentalSnapshotService {
+
+    public record Snapshot(String version, byte[] json, byte[] gzip) {
+    }
+
+    private static final class SnapshotTooLargeException extends RuntimeException {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalSnapshotService.class);
+
+    private final RentalService rentalService;
+    private final RentalMapper rentalMapper;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rental-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+
+    private volatile Snapshot snapshot;
+
+    @Value("${rentals.snapshot.enabled}")
+    private boolean enabled;
+
+    @Value("${rentals.snapshot.gzip}")
+    private boolean gzipEnabled;
+
+    @Value("${rentals.snapshot.max-bytes}")
+    private long maxBytes;
+
+    public RentalSnapshotService(RentalService rentalService, RentalMapper rentalMapper, ObjectMapper objectMapper) {
+        this.rentalService = rentalService;
+        this.rentalMapper = rentalMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    // Null while the first build is running, or when the catalog does not fit in the byte budget
+    public Snapshot current() {
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    @EventListener
+    public void onRentalChanged(RentalChangedEvent event) {
+        scheduleRebuild();
+    }
+
+    @EventListener
+    public void onRentalsImported(RentalsImportedEvent event) {
+        scheduleRebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void scheduleRebuild() {
+        if (!enabled) {
+            return;
+        }
+        // Writes arriving while a rebuild is queued are folded into it
+        if (rebuildQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                rebuildQueued.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    private void rebuild() {
+        String version = rentalService.getCatalogVersion();
+        try {
+            byte[] json = serializeCatalog();
+            byte[] gzip = gzipEnabled ? gzip(json) : null;
+            snapshot = new Snapshot(version, json, gzip);
+            logger.info("Rentals snapshot {} rebuilt ({} bytes)", version, json.length);
+        } catch (SnapshotTooLargeException e) {
+            snapshot = null;
+            logger.warn("Rentals catalog exceeds {} bytes, snapshot disabled until next write", maxBytes);
+        } catch (RuntimeException | IOException e) {
+            // The previous snapshot is stale by now: /all streams current data until a rebuild succeeds
+            snapshot = null;
+            logger.error("Error while rebuilding rentals snapshot: {}", e.getMessage(), e);
+        }
+    }
+
+    private byte[] serializeCatalog() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("rentals");
+            rentalService.streamAllRentals(rental -> {
+                try {
+                    objectMapper.writeValue(generator, rentalMapper.toResponse(rental));
+                    if (buffer.size() > maxBytes) {
+                        throw new SnapshotTooLargeException();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    private byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(json);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,215 @@
+package com.rentals.services;
+
+import com.rentals.dto.rentals.RentalMeasuresView;
+import com.rentals.events.RentalChangedEvent;
+import com.rentals.events.RentalsImportedEvent;
+import com.rentals.model.Rental;
+import com.rentals.repository.RentalRepository;
+import com.rentals.responses.DistributionResponse;
+import com.rentals.responses.HistogramBucketResponse;
+import com.rentals.responses.RentalStatisticsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Catalog statistics maintained incrementally from rental writes. Each write refreshes an immutable
+ * response, so reads never scan anything.
+ */
+@Service
+public class RentalStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalStatisticsService.class);
+
+    // Quantiles are exact within 1%
+    private static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final class Distribution {
+        private final QuantileSketch sketch = new QuantileSketch(RELATIVE_ACCURACY);
+        // Exact min and max, which a sketch only approximates
+        private final TreeMap<Double, Integer> values = new TreeMap<>();
+        private double sum;
+
+        void add(double value) {
+            sketch.add(value);
+            values.merge(value, 1, Integer::sum);
+            sum += value;
+        }
+
+        void remove(double value) {
+            sketch.remove(value);
+            values.computeIfPresent(value, (key, count) -> count == 1 ? null : count - 1);
+            sum -= value;
+        }
+
+        void merge(Distribution other) {
+            sketch.merge(other.sketch);
+            other.values.forEach((value, count) -> values.merge(value, count, Integer::sum));
+            sum += other.sum;
+        }
+
+        DistributionResponse toResponse() {
+            if (sketch.count() == 0) {
+                return new DistributionResponse(null, null, null, null, null, null, null, null);
+            }
+            return new DistributionResponse(
+                    round(values.firstKey()),
+                    round(values.lastKey()),
+                    round(sum / sketch.count()),
+                    round(sketch.quantile(0.25)),
+                    round(sketch.quantile(0.50)),
+                    round(sketch.quantile(0.75)),
+                    round(sketch.quantile(0.90)),
+                    round(sketch.quantile(0.99))
+            );
+        }
+    }
+
+    private final class Statistics {
+        // rental id -> {price, surface}, needed to retract a rental's previous values on update
+        private final Map<Integer, double[]> rentals = new HashMap<>();
+        private final Distribution price = new Distribution();
+        private final Distribution pricePerSquareMeter = new Distribution();
+        private final Distribution surface = new Distribution();
+        private final long[] surfaceHistogram = new long[surfaceBuckets.length + 1];
+
+        void put(Integer id, BigDecimal rentalPrice, BigDecimal rentalSurface) {
+            remove(id);
+            double[] values = {rentalPrice.doubleValue(), rentalSurface.doubleValue()};
+            rentals.put(id, values);
+            apply(values, 1);
+        }
+
+        void remove(Integer id) {
+            double[] previous = rentals.remove(id);
+            if (previous != null) {
+                apply(previous, -1);
+            }
+        }
+
+        void merge(Statistics other) {
+            rentals.putAll(other.rentals);
+            price.merge(other.price);
+            pricePerSquareMeter.merge(other.pricePerSquareMeter);
+            surface.merge(other.surface);
+            for (int i = 0; i < surfaceHistogram.length; i++) {
+                surfaceHistogram[i] += other.surfaceHistogram[i];
+            }
+        }
+
+        private void apply(double[] values, int sign) {
+            double rentalPrice = values[0];
+            double rentalSurface = values[1];
+            if (sign > 0) {
+                price.add(rentalPrice);
+                surface.add(rentalSurface);
+                if (rentalSurface > 0) {
+                    pricePerSquareMeter.add(rentalPrice / rentalSurface);
+                }
+            } else {
+                price.remove(rentalPrice);
+                surface.remove(rentalSurface);
+                if (rentalSurface > 0) {
+                    pricePerSquareMeter.remove(rentalPrice / rentalSurface);
+                }
+            }
+            int bucket = Arrays.binarySearch(surfaceBuckets, rentalSurface);
+            bucket = bucket >= 0 ? bucket + 1 : -bucket - 1;
+            surfaceHistogram[bucket] += sign;
+        }
+
+        RentalStatisticsResponse toResponse() {
+            List<HistogramBucketResponse> histogram = new ArrayList<>(surfaceHistogram.length);
+            for (int i = 0; i < surfaceHistogram.length; i++) {
+                histogram.add(new HistogramBucketResponse(
+                        i == 0 ? BigDecimal.ZERO : BigDecimal.valueOf(surfaceBuckets[i - 1]),
+                        i == surfaceBuckets.length ? null : BigDecimal.valueOf(surfaceBuckets[i]),
+                        surfaceHistogram[i]
+                ));
+            }
+            return new RentalStatisticsResponse(
+                    rentals.size(),
+                    price.toResponse(),
+                    pricePerSquareMeter.toResponse(),
+                    surface.toResponse(),
+                    histogram
+            );
+        }
+    }
+
+    private final RentalRepository rentalRepository;
+    // Upper bounds (exclusive) of the surface histogram buckets, in m²
+    private final double[] surfaceBuckets;
+
+    private final Statistics statistics;
+    private volatile RentalStatisticsResponse snapshot;
+
+    public RentalStatisticsService(
+            RentalRepository rentalRepository,
+            @Value("${rentals.statistics.surface-buckets}") double[] surfaceBuckets) {
+        this.rentalRepository = rentalRepository;
+        this.surfaceBuckets = surfaceBuckets.clone();
+        Arrays.sort(this.surfaceBuckets);
+        this.statistics = new Statistics();
+        this.snapshot = statistics.toResponse();
+    }
+
+    public RentalStatisticsResponse getStatistics() {
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void seed() {
+        long start = System.currentTimeMillis();
+        Statistics seeded = new Statistics();
+        try (Stream<RentalMeasuresView> rows = rentalRepository.streamMeasures()) {
+            rows.forEach(row -> seeded.put(row.getId(), row.getPrice(), row.getSurface()));
+        }
+
+        synchronized (statistics) {
+            // Rentals written while seeding are already counted with their latest values
+            statistics.rentals.keySet().forEach(seeded::remove);
+            statistics.merge(seeded);
+            snapshot = statistics.toResponse();
+        }
+        logger.info("Rental statistics seeded with {} rentals in {} ms", seeded.rentals.size(), System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public void onRentalChanged(RentalChangedEvent event) {
+        Rental rental = event.rental();
+        synchronized (statistics) {
+            statistics.put(rental.getId(), rental.getPrice(), rental.getSurface());
+            snapshot = statistics.toResponse();
+        }
+    }
+
+    @EventListener
+    public void onRentalsImported(RentalsImportedEvent event) {
+        synchronized (statistics) {
+            for (Rental rental : event.rentals()) {
+                statistics.put(rental.getId(), rental.getPrice(), rental.getSurface());
+            }
+            snapshot = statistics.toResponse();
+        }
+    }
+
+    private static BigDecimal round(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
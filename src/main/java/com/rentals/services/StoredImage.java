@@ -0,0 +1,4 @@
+package com.rentals.services;
+
+public record StoredImage(String hash, String filename, long size, String url) {
+}
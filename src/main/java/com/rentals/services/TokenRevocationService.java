@@ -0,0 +1,178 @@
+package com.rentals.services;
+
+import com.rentals.cache.BloomFilter;
+import com.rentals.model.RevokedToken;
+import com.rentals.repository.RevokedTokenRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Revoked tokens, by jti. The database is the source of truth; the request path only reads an in-memory copy:
+ * a Bloom filter that answers "not revoked" for almost every token without touching the exact map, which
+ * settles the rare positives. The copy is loaded at startup, picks up revocations made by other instances
+ * every sync-seconds, and is rebuilt without the expired tokens every purge-minutes.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    // Rows committed by another instance shortly before a sync may carry an earlier revoked_at
+    private static final Duration SYNC_OVERLAP = Duration.ofSeconds(10);
+
+    // Swapped as a whole on rebuild, so readers never see a filter without the map that goes with it
+    private record Revocations(BloomFilter filter, Map<String, Long> expiresAt) {
+    }
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final long expectedEntries;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "token-revocation-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Revocations revocations;
+    private volatile LocalDateTime lastSync;
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong filterPositives = new AtomicLong();
+    private final AtomicLong revoked = new AtomicLong();
+
+    @Value("${security.jwt.revocation.sync-seconds}")
+    private long syncSeconds;
+
+    @Value("${security.jwt.revocation.purge-minutes}")
+    private long purgeMinutes;
+
+    public TokenRevocationService(
+            RevokedTokenRepository revokedTokenRepository,
+            @Value("${security.jwt.revocation.expected-entries}") long expectedEntries
+    ) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedEntries = expectedEntries;
+        this.revocations = new Revocations(new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE), new ConcurrentHashMap<>());
+        // Loaded before the server accepts requests, so a restart never lets a revoked token through
+        rebuild();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleOnReady() {
+        if (syncSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(this::sync, syncSeconds, syncSeconds, TimeUnit.SECONDS);
+        }
+        if (purgeMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::purge, purgeMinutes, purgeMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // On every authenticated request: no query, no lock
+    public boolean isRevoked(String jti) {
+        checks.incrementAndGet();
+        Revocations current = revocations;
+        if (!current.filter().mightContain(jti)) {
+            return false;
+        }
+        filterPositives.incrementAndGet();
+        return current.expiresAt().containsKey(jti);
+    }
+
+    // Returns false when the token was already revoked
+    public boolean revoke(String jti, Date expiration) {
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(expiration.toInstant(), ZoneId.systemDefault());
+        boolean inserted = revokedTokenRepository.revoke(jti, expiresAt, LocalDateTime.now()) > 0;
+        add(jti, expiration.getTime());
+        if (inserted) {
+            revoked.incrementAndGet();
+        }
+        return inserted;
+    }
+
+    public Map<String, Object> stats() {
+        Revocations current = revocations;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("revoked_tokens", current.expiresAt().size());
+        stats.put("filter_bits", current.filter().getBitCount());
+        stats.put("checks", checks.get());
+        stats.put("filter_positives", filterPositives.get());
+        stats.put("revoked_since_startup", revoked.get());
+        return stats;
+    }
+
+    private synchronized void add(String jti, long expiresAt) {
+        Revocations current = revocations;
+        current.expiresAt().put(jti, expiresAt);
+        current.filter().add(jti);
+    }
+
+    // Reloads every unexpired revocation into a new filter sized for them
+    private void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        List<RevokedToken> rows = revokedTokenRepository.findByExpiresAtAfter(now);
+        long nowMillis = System.currentTimeMillis();
+        synchronized (this) {
+            Map<String, Long> expiresAt = new ConcurrentHashMap<>();
+            for (RevokedToken row : rows) {
+                expiresAt.put(row.getJti(), row.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+            // Revoked here while the rows were being read
+            revocations.expiresAt().forEach((jti, expiry) -> {
+                if (expiry > nowMillis) {
+                    expiresAt.putIfAbsent(jti, expiry);
+                }
+            });
+            BloomFilter filter = new BloomFilter(Math.max(expectedEntries, 2L * expiresAt.size()), FALSE_POSITIVE_RATE);
+            expiresAt.keySet().forEach(filter::add);
+            revocations = new Revocations(filter, expiresAt);
+            lastSync = now;
+        }
+        logger.info("Token revocation list loaded: {} revoked tokens", revocations.expiresAt().size());
+    }
+
+    private void sync() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime since = lastSync.minus(SYNC_OVERLAP);
+            for (RevokedToken row : revokedTokenRepository.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(since, now)) {
+                add(row.getJti(), row.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+            lastSync = now;
+        } catch (RuntimeException e) {
+            logger.warn("Could not sync the token revocation list: {}", e.getMessage());
+        }
+    }
+
+    private void purge() {
+        try {
+            int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+            rebuild();
+            logger.info("Purged {} expired token revocations", deleted);
+        } catch (RuntimeException e) {
+            logger.warn("Could not purge the token revocation list: {}", e.getMessage());
+        }
+    }
+}
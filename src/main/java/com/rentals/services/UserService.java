@@ -3,21 +3,29 @@ package com.rentals.services;
 import com.rentals.exceptions.NotFoundException;
 import com.rentals.model.User;
 import com.rentals.repository.UserRepository;
+import jakarta.persistence.EntityManager;
 import org.springframework.stereotype.Service;
 
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
+    private final EntityManager entityManager;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, EntityManager entityManager) {
         this.userRepository = userRepository;
+        this.entityManager = entityManager;
     }
 
     public User findByEmail(String email) {
         return userRepository.findByEmail(email).orElse(null);
     }
 
+    // A reference to the user for foreign keys, without loading its row
+    public User getReference(Integer id) {
+        return entityManager.getReference(User.class, id);
+    }
+
     public User getUserById(Integer id) {
         return userRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("User not found with ID : " + id));
@@ -0,0 +1,108 @@
+package com.rentals.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
+
+/**
+ * One file per image, in the sharded layout of ImagePathResolver.
+ */
+@Component
+public class FilesystemImageStore implements ImageStore {
+
+    private final ImagePathResolver imagePathResolver;
+
+    public FilesystemImageStore(ImagePathResolver imagePathResolver) {
+        this.imagePathResolver = imagePathResolver;
+    }
+
+    @Override
+    public ImageLocation locate(String name) throws IOException {
+        for (Path candidate : imagePathResolver.candidates(name)) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(candidate, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    return new ImageLocation(candidate, 0, attributes.size(), attributes.lastModifiedTime().toMillis());
+                }
+            } catch (NoSuchFileException e) {
+                // Try the next location
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public InputStream openStream(String name) throws IOException {
+        ImageLocation location = locate(name);
+        if (location == null) {
+            throw new NoSuchFileException(name);
+        }
+        return Files.newInputStream(location.file());
+    }
+
+    @Override
+    public void put(String name, Path source) throws IOException {
+        Path target = imagePathResolver.resolve(name);
+        Files.createDirectories(target.getParent());
+        try {
+            // Readers see either no file or the complete one
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Source on another filesystem: copy next to the target first
+            Path temporary = target.resolveSibling(name + ".tmp");
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(source);
+        }
+    }
+
+    @Override
+    public boolean delete(String name) throws IOException {
+        boolean deleted = false;
+        for (Path candidate : imagePathResolver.candidates(name)) {
+            deleted |= Files.deleteIfExists(candidate);
+        }
+        return deleted;
+    }
+
+    @Override
+    public void forEach(Consumer<StoredEntry> consumer) throws IOException {
+        Path root = imagePathResolver.getRoot();
+        if (Files.notExists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                // The spool and the segment store keep their files under hidden directories
+                return !directory.equals(root) && directory.getFileName().toString().startsWith(".")
+                        ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile()) {
+                    consumer.accept(new StoredEntry(file.getFileName().toString(), attributes.size(), attributes.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Moved by the layout migration since it was listed
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,142 @@
+package com.rentals.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves images from the former flat uploads/ directory into their shard while the application serves them.
+ * Each file is moved with a single rename, and readers look in both places (see ImagePathResolver).
+ */
+@Service
+public class ImageLayoutMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageLayoutMigrationService.class);
+
+    private final ImagePathResolver imagePathResolver;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-layout-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong moved = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @Value("${rentals.images.migration.on-startup}")
+    private boolean onStartup;
+
+    // Renames per second, so a large backlog does not saturate the disk under live traffic
+    @Value("${rentals.images.migration.files-per-second}")
+    private int filesPerSecond;
+
+    public ImageLayoutMigrationService(ImagePathResolver imagePathResolver) {
+        this.imagePathResolver = imagePathResolver;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (onStartup) {
+            start();
+        }
+    }
+
+    // Returns false when a migration is already running
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                migrate();
+            } catch (Exception e) {
+                logger.error("Image layout migration stopped: {}", e.getMessage(), e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("flat_layout_present", imagePathResolver.isFlatLayoutPresent());
+        status.put("moved", moved.get());
+        status.put("failed", failed.get());
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void migrate() throws IOException, InterruptedException {
+        Path root = imagePathResolver.getRoot();
+        if (Files.notExists(root)) {
+            imagePathResolver.flatLayoutMigrated();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long pauseNanos = filesPerSecond > 0 ? 1_000_000_000L / filesPerSecond : 0;
+        long failedBefore = failed.get();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root, Files::isRegularFile)) {
+            for (Path file : files) {
+                String filename = file.getFileName().toString();
+                if (filename.startsWith(".") || filename.endsWith(".tmp")) {
+                    continue;
+                }
+                move(file, filename);
+                if (pauseNanos > 0) {
+                    Thread.sleep(pauseNanos / 1_000_000, (int) (pauseNanos % 1_000_000));
+                }
+            }
+        }
+        if (failed.get() == failedBefore) {
+            // Every reader can now skip the flat lookup
+            imagePathResolver.flatLayoutMigrated();
+        }
+        logger.info("Image layout migration done in {} ms: {} files moved, {} failed",
+                System.currentTimeMillis() - start, moved.get(), failed.get());
+    }
+
+    private void move(Path file, String filename) {
+        try {
+            Path target = imagePathResolver.resolve(filename);
+            Files.createDirectories(target.getParent());
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            moved.incrementAndGet();
+        } catch (FileAlreadyExistsException e) {
+            // Content-addressed image stored again since: both copies hold the same bytes
+            try {
+                Files.delete(file);
+                moved.incrementAndGet();
+            } catch (IOException deleteError) {
+                failed.incrementAndGet();
+                logger.warn("Could not delete duplicate image {}: {}", filename, deleteError.getMessage());
+            }
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            logger.warn("Could not move image {} to its shard: {}", filename, e.getMessage());
+        }
+    }
+}
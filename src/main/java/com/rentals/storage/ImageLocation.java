@@ -0,0 +1,7 @@
+package com.rentals.storage;
+
+import java.nio.file.Path;
+
+// `size` bytes of `file`, starting at `offset`: a whole file, or a slice of a segment
+public record ImageLocation(Path file, long offset, long size, long lastModified) {
+}
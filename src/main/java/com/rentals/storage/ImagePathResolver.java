@@ -0,0 +1,96 @@
+package com.rentals.storage;
+
+import com.rentals.exceptions.NotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Maps image filenames to their place on disk: uploads/ab/cd/&lt;name&gt;, two levels of 256 directories taken
+ * from the start of the name. Variants share the prefix of their original, so they land in the same directory.
+ */
+@Component
+public class ImagePathResolver {
+
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+    private static final Pattern HEX_PREFIX = Pattern.compile("[0-9a-fA-F]{4}.*");
+
+    private final Path root;
+    // Images from the former flat layout may remain until the migration has moved them all
+    private volatile boolean flatLayoutPresent = true;
+
+    public ImagePathResolver(@Value("${rentals.images.root}") String root) {
+        this.root = Paths.get(root);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Path getSpoolDir() {
+        return root.resolve(".spool");
+    }
+
+    public Path getSegmentDir() {
+        return root.resolve(".segments");
+    }
+
+    // Where an image is written
+    public Path resolve(String filename) {
+        check(filename);
+        String shard = HEX_PREFIX.matcher(filename).matches()
+                ? filename.substring(0, 4).toLowerCase()
+                : sha256Prefix(filename);
+        return root.resolve(shard.substring(0, 2)).resolve(shard.substring(2, 4)).resolve(filename);
+    }
+
+    // Where an image may be read from. The flat location is tried first: the migration only moves files
+    // from there to their shard, so a reader cannot miss a file that moves between its two lookups.
+    public List<Path> candidates(String filename) {
+        Path sharded = resolve(filename);
+        return flatLayoutPresent ? List.of(root.resolve(filename), sharded) : List.of(sharded);
+    }
+
+    // First existing location, or null
+    public Path locate(String filename) {
+        for (Path candidate : candidates(filename)) {
+            if (Files.exists(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    public boolean isFlatLayoutPresent() {
+        return flatLayoutPresent;
+    }
+
+    void flatLayoutMigrated() {
+        flatLayoutPresent = false;
+    }
+
+    private void check(String filename) {
+        // Names come from URLs: no separators, no "..", no hidden files such as the spool directory
+        if (filename == null || !VALID_NAME.matcher(filename).matches() || filename.contains("..")) {
+            throw new NotFoundException("Image " + filename + " not found");
+        }
+    }
+
+    private String sha256Prefix(String filename) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(filename.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 2);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
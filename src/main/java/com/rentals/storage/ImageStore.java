@@ -0,0 +1,38 @@
+package com.rentals.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Where stored images (originals and their variants) are kept, by name. Names are immutable: an image
+ * is written once and only ever deleted.
+ */
+public interface ImageStore extends AutoCloseable {
+
+    // Where the bytes of an image are, or null when it is not stored
+    ImageLocation locate(String name) throws IOException;
+
+    default boolean exists(String name) throws IOException {
+        return locate(name) != null;
+    }
+
+    InputStream openStream(String name) throws IOException;
+
+    // Stores the content of `source` under `name` and takes ownership of the file (it may be moved or deleted)
+    void put(String name, Path source) throws IOException;
+
+    boolean delete(String name) throws IOException;
+
+    void forEach(Consumer<StoredEntry> consumer) throws IOException;
+
+    default Map<String, Object> stats() {
+        return Map.of();
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
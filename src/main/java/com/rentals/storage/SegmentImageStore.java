@@ -0,0 +1,461 @@
+package com.rentals.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Packs small images into large append-only segment files, so they stop costing an inode and a directory
+ * entry each. Images above the size limit are handed to another store.
+ * <p>
+ * A record is a 22-byte header (magic, name length, data length or -1 for a deletion, timestamp, CRC32C of
+ * name and data), the name, then the data. Records are forced to disk before the in-memory index points at
+ * them. The index is not persisted: it is rebuilt at startup by scanning the segments, the last record of a
+ * name winning. A torn record at the end of the last segment, left by a crash, is detected with its CRC and
+ * truncated away. Reads are slices of a read-only mapping of the segment.
+ */
+public class SegmentImageStore implements ImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentImageStore.class);
+
+    private static final int MAGIC = 0x494D4753;
+    private static final int HEADER_BYTES = 22;
+    private static final int TOMBSTONE = -1;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{10})\\.dat");
+    // Compacted segments are deleted after this delay, as responses may still be sending them
+    private static final long RETIRED_SEGMENT_DELAY_SECONDS = 60;
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        // Guarded by the store
+        private long size;
+        private long deadBytes;
+        private volatile MappedByteBuffer mapped;
+
+        private Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private record Entry(Segment segment, int offset, int nameLength, int length, long timestamp) {
+        int dataOffset() {
+            return offset + HEADER_BYTES + nameLength;
+        }
+
+        int recordLength() {
+            return HEADER_BYTES + nameLength + length;
+        }
+    }
+
+    private final Path directory;
+    private final ImageStore largeObjects;
+    private final int segmentBytes;
+    private final int maxObjectBytes;
+    private final double compactionRatio;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    // Guarded by `this`, like every write
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+
+    private final AtomicLong compactions = new AtomicLong();
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-segment-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SegmentImageStore(
+            Path directory,
+            ImageStore largeObjects,
+            int segmentBytes,
+            int maxObjectBytes,
+            double compactionRatio,
+            long compactionIntervalMinutes
+    ) throws IOException {
+        this.directory = directory;
+        this.largeObjects = largeObjects;
+        this.segmentBytes = segmentBytes;
+        this.maxObjectBytes = maxObjectBytes;
+        this.compactionRatio = compactionRatio;
+        Files.createDirectories(directory);
+        rebuild();
+        if (compactionIntervalMinutes > 0) {
+            maintenance.scheduleWithFixedDelay(this::compact, compactionIntervalMinutes, compactionIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @Override
+    public ImageLocation locate(String name) throws IOException {
+        Entry entry = index.get(name);
+        if (entry == null) {
+            return largeObjects.locate(name);
+        }
+        return new ImageLocation(entry.segment().path, entry.dataOffset(), entry.length(), entry.timestamp());
+    }
+
+    @Override
+    public InputStream openStream(String name) throws IOException {
+        Entry entry = index.get(name);
+        if (entry == null) {
+            return largeObjects.openStream(name);
+        }
+        return new ByteBufferInputStream(slice(entry));
+    }
+
+    @Override
+    public void put(String name, Path source) throws IOException {
+        if (Files.size(source) > maxObjectBytes) {
+            largeObjects.put(name, source);
+            return;
+        }
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(source));
+        synchronized (this) {
+            Entry entry = append(name, data, System.currentTimeMillis());
+            Entry previous = index.put(name, entry);
+            if (previous != null) {
+                previous.segment().deadBytes += previous.recordLength();
+            }
+        }
+        Files.delete(source);
+    }
+
+    @Override
+    public boolean delete(String name) throws IOException {
+        synchronized (this) {
+            Entry entry = index.get(name);
+            if (entry != null) {
+                // The deletion is durable before the image disappears from the index
+                Entry tombstone = append(name, null, System.currentTimeMillis());
+                index.remove(name);
+                entry.segment().deadBytes += entry.recordLength();
+                tombstone.segment().deadBytes += tombstone.recordLength();
+                return true;
+            }
+        }
+        return largeObjects.delete(name);
+    }
+
+    @Override
+    public void forEach(Consumer<StoredEntry> consumer) throws IOException {
+        index.forEach((name, entry) -> consumer.accept(new StoredEntry(name, entry.length(), entry.timestamp())));
+        largeObjects.forEach(consumer);
+    }
+
+    @Override
+    public synchronized Map<String, Object> stats() {
+        long size = 0;
+        long deadBytes = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size;
+            deadBytes += segment.deadBytes;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("segments", segments.size());
+        stats.put("objects", index.size());
+        stats.put("live_bytes", size - deadBytes);
+        stats.put("dead_bytes", deadBytes);
+        stats.put("compactions", compactions.get());
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        maintenance.shutdownNow();
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    // Rewrites the live records of segments that are mostly dead into the active segment
+    public void compact() {
+        List<Segment> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.size > 0 && (double) segment.deadBytes / segment.size >= compactionRatio) {
+                    candidates.add(segment);
+                }
+            }
+        }
+        for (Segment segment : candidates) {
+            try {
+                compact(segment);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Compaction of {} failed: {}", segment.path.getFileName(), e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        MappedByteBuffer buffer = segment.mapped;
+        boolean hasOlderSegments;
+        synchronized (this) {
+            hasOlderSegments = segments.firstKey() < segment.id;
+        }
+        int position = 0;
+        while (position + HEADER_BYTES <= segment.size) {
+            int nameLength = Short.toUnsignedInt(buffer.getShort(position + 4));
+            int length = buffer.getInt(position + 6);
+            long timestamp = buffer.getLong(position + 10);
+            if (buffer.getInt(position) != MAGIC) {
+                break;
+            }
+            String name = StandardCharsets.UTF_8.decode(buffer.slice(position + HEADER_BYTES, nameLength)).toString();
+            synchronized (this) {
+                Entry current = index.get(name);
+                if (length != TOMBSTONE && current != null && current.segment() == segment && current.offset() == position) {
+                    index.put(name, append(name, buffer.slice(current.dataOffset(), length), timestamp));
+                } else if (length == TOMBSTONE && hasOlderSegments && current == null) {
+                    // An older segment may still hold the deleted record: the deletion must outlive this segment
+                    Entry tombstone = append(name, null, timestamp);
+                    tombstone.segment().deadBytes += tombstone.recordLength();
+                }
+            }
+            position += HEADER_BYTES + nameLength + Math.max(length, 0);
+        }
+
+        synchronized (this) {
+            segments.remove(segment.id);
+        }
+        segment.channel.close();
+        // Deleted in compaction order, so a crash can only leave a retired segment behind a newer copy of its records
+        maintenance.schedule(() -> deleteQuietly(segment.path), RETIRED_SEGMENT_DELAY_SECONDS, TimeUnit.SECONDS);
+        compactions.incrementAndGet();
+        logger.info("Compacted image segment {}", segment.path.getFileName());
+    }
+
+    private void rebuild() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches()).sorted().toList();
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < files.size(); i++) {
+            Matcher matcher = SEGMENT_NAME.matcher(files.get(i).getFileName().toString());
+            matcher.matches();
+            Segment segment = open(Long.parseLong(matcher.group(1)), files.get(i));
+            segments.put(segment.id, segment);
+            // Only the last segment can end with a torn write: earlier ones were forced when they were sealed
+            scan(segment, i == files.size() - 1);
+        }
+
+        List<Segment> empty = new ArrayList<>();
+        // Only the oldest ones: a later dead segment may hold the deletions of records in an earlier one
+        for (Segment segment : segments.values()) {
+            if (segment == segments.lastEntry().getValue() || segment.size != segment.deadBytes) {
+                break;
+            }
+            empty.add(segment);
+        }
+        for (Segment segment : empty) {
+            // Fully deleted, or compacted just before a restart
+            segments.remove(segment.id);
+            segment.channel.close();
+            deleteQuietly(segment.path);
+        }
+
+        active = segments.isEmpty() ? create(1) : segments.lastEntry().getValue();
+        logger.info("Image segment index rebuilt from {} segments in {} ms: {} images",
+                segments.size(), System.currentTimeMillis() - start, index.size());
+    }
+
+    private void scan(Segment segment, boolean last) throws IOException {
+        long fileSize = segment.channel.size();
+        MappedByteBuffer buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        int position = 0;
+        while (position + HEADER_BYTES <= fileSize) {
+            int nameLength = Short.toUnsignedInt(buffer.getShort(position + 4));
+            int length = buffer.getInt(position + 6);
+            long timestamp = buffer.getLong(position + 10);
+            int crc = buffer.getInt(position + 18);
+            long recordLength = (long) HEADER_BYTES + nameLength + Math.max(length, 0);
+            if (buffer.getInt(position) != MAGIC || length < TOMBSTONE || position + recordLength > fileSize) {
+                break;
+            }
+            if (last && crc != crc(buffer.slice(position + HEADER_BYTES, nameLength + Math.max(length, 0)))) {
+                break;
+            }
+
+            String name = StandardCharsets.UTF_8.decode(buffer.slice(position + HEADER_BYTES, nameLength)).toString();
+            if (length == TOMBSTONE) {
+                Entry previous = index.remove(name);
+                if (previous != null) {
+                    previous.segment().deadBytes += previous.recordLength();
+                }
+                segment.deadBytes += recordLength;
+            } else {
+                Entry previous = index.put(name, new Entry(segment, position, nameLength, length, timestamp));
+                if (previous != null) {
+                    previous.segment().deadBytes += previous.recordLength();
+                }
+            }
+            position += (int) recordLength;
+        }
+
+        if (position < fileSize) {
+            if (last) {
+                logger.warn("Truncating {} at offset {}: incomplete record left by a crash", segment.path.getFileName(), position);
+                segment.channel.truncate(position);
+                segment.channel.force(true);
+                buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, position);
+            } else {
+                logger.error("{} is corrupt after offset {}, the rest of it is ignored", segment.path.getFileName(), position);
+                segment.deadBytes += fileSize - position;
+                position = (int) fileSize;
+            }
+        }
+        segment.size = position;
+        segment.mapped = buffer;
+    }
+
+    // Caller holds the lock
+    private Entry append(String name, ByteBuffer data, long timestamp) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = data == null ? 0 : data.remaining();
+        int recordLength = HEADER_BYTES + nameBytes.length + length;
+        if (active.size > 0 && active.size + recordLength > segmentBytes) {
+            roll();
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(nameBytes);
+        if (data != null) {
+            crc.update(data.duplicate());
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + nameBytes.length)
+                .putInt(MAGIC)
+                .putShort((short) nameBytes.length)
+                .putInt(data == null ? TOMBSTONE : length)
+                .putLong(timestamp)
+                .putInt((int) crc.getValue())
+                .put(nameBytes)
+                .flip();
+
+        long position = active.size;
+        write(header, position);
+        if (data != null) {
+            write(data.duplicate(), position + header.capacity());
+        }
+        active.channel.force(false);
+        active.size += recordLength;
+        return new Entry(active, (int) position, nameBytes.length, length, timestamp);
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += active.channel.write(buffer, position);
+        }
+    }
+
+    // Seals the active segment and starts the next one
+    private void roll() throws IOException {
+        Segment sealed = active;
+        sealed.channel.force(true);
+        sealed.mapped = sealed.channel.map(FileChannel.MapMode.READ_ONLY, 0, sealed.size);
+        active = create(sealed.id + 1);
+    }
+
+    private Segment create(long id) throws IOException {
+        Segment segment = open(id, directory.resolve(String.format("segment-%010d.dat", id)));
+        segments.put(id, segment);
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            // Makes the new file itself survive a crash, where the platform allows syncing a directory
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not sync {}: {}", directory, e.getMessage());
+        }
+        return segment;
+    }
+
+    private Segment open(long id, Path path) throws IOException {
+        return new Segment(id, path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    private ByteBuffer slice(Entry entry) throws IOException {
+        Segment segment = entry.segment();
+        int end = entry.dataOffset() + entry.length();
+        MappedByteBuffer mapped = segment.mapped;
+        if (mapped == null || mapped.capacity() < end) {
+            // The active segment grew since it was last mapped
+            synchronized (segment) {
+                mapped = segment.mapped;
+                if (mapped == null || mapped.capacity() < end) {
+                    mapped = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.channel.size());
+                    segment.mapped = mapped;
+                }
+            }
+        }
+        return mapped.slice(entry.dataOffset(), entry.length());
+    }
+
+    private int crc(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer);
+        return (int) crc.getValue();
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
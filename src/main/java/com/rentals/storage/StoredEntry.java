@@ -0,0 +1,4 @@
+package com.rentals.storage;
+
+public record StoredEntry(String name, long size, long lastModified) {
+}
@@ -0,0 +1,5 @@
+-- Change sequence used by GET /api/rentals/changes. Existing rentals are numbered by id the first time.
+CREATE TABLE IF NOT EXISTS rental_change_sequence (id INT PRIMARY KEY, value BIGINT NOT NULL);
+INSERT IGNORE INTO rental_change_sequence (id, value) SELECT 1, COALESCE(MAX(id), 0) FROM rentals;
+UPDATE rentals SET change_seq = id WHERE change_seq IS NULL;
+UPDATE rentals SET version = 0 WHERE version IS NULL;
@@ -0,0 +1,44 @@
+package com.rentals.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+    @Test
+    void neverMissesAnAddedKey() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("token-" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("token-" + i));
+        }
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheRequestedRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("token-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        // 1% expected; leave room for the hash functions not being ideal
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives out of 100000");
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(0, 0.01);
+        assertFalse(filter.mightContain(""));
+        assertFalse(filter.mightContain("token"));
+        assertTrue(filter.getBitCount() >= 64);
+    }
+}
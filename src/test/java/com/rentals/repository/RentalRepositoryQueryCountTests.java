@@ -0,0 +1,99 @@
+package com.rentals.repository;
+
+import com.rentals.dto.rentals.RentalFilterDto;
+import com.rentals.model.Rental;
+import com.rentals.model.User;
+import com.rentals.responses.RentalResponse;
+import com.rentals.services.RentalMapper;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Listing rentals must cost one statement, whatever the number of distinct owners
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+class RentalRepositoryQueryCountTests {
+
+    private static final int RENTALS = 20;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    private final RentalMapper rentalMapper = new RentalMapper();
+    private final List<Integer> ids = new ArrayList<>();
+    private final List<Integer> ownerIds = new ArrayList<>();
+    private Statistics statistics;
+
+    @BeforeEach
+    void persistRentals() {
+        for (int i = 0; i < RENTALS; i++) {
+            // One owner per rental: the worst case for N+1 owner loading
+            User owner = new User();
+            owner.setEmail("owner" + i + "@test.com");
+            owner.setName("Owner " + i);
+            owner.setPassword("password");
+            entityManager.persist(owner);
+
+            Rental rental = new Rental();
+            rental.setName("Rental " + i);
+            rental.setSurface(BigDecimal.valueOf(20 + i));
+            rental.setPrice(BigDecimal.valueOf(500 + i));
+            rental.setOwner(owner);
+            entityManager.persist(rental);
+            ids.add(rental.getId());
+            ownerIds.add(owner.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void listingAPageCostsOneStatement() {
+        List<Rental> rentals = rentalRepository.findPageAfter(null, null, null, null, null, PageRequest.of(0, RENTALS + 1));
+        List<RentalResponse> responses = rentals.stream().map(rentalMapper::toResponse).toList();
+
+        assertEquals(RENTALS, responses.size());
+        assertEquals(ownerIds, responses.stream().map(RentalResponse::getOwner_id).toList());
+        rentals.forEach(rental -> assertFalse(Hibernate.isInitialized(rental.getOwner())));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void loadingRentalsByIdCostsOneStatement() {
+        List<RentalResponse> responses = new ArrayList<>();
+        rentalRepository.findAllById(ids).forEach(rental -> responses.add(rentalMapper.toResponse(rental)));
+
+        assertEquals(RENTALS, responses.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void projectingTheOwnerIdCostsOneStatement() {
+        List<Object[]> rows = rentalRepository.findPageProjection(List.of("r.ownerId"), null, new RentalFilterDto(), RENTALS + 1);
+
+        assertEquals(ownerIds, rows.stream().map(row -> (Integer) row[1]).toList());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,68 @@
+package com.rentals.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ImageServingServiceTests {
+
+    private static final String ETAG = "\"abc\"";
+
+    @Test
+    void noRangeHeaderSendsTheWholeFile() {
+        assertNull(ImageServingService.range(new MockHttpServletRequest(), ETAG, 1000));
+    }
+
+    @Test
+    void parsesBoundedRanges() {
+        assertArrayEquals(new long[]{0, 100}, range("bytes=0-99", 1000));
+        assertArrayEquals(new long[]{500, 1000}, range("bytes=500-999", 1000));
+        // The last byte position is clamped to the file
+        assertArrayEquals(new long[]{500, 1000}, range("bytes=500-5000", 1000));
+    }
+
+    @Test
+    void parsesOpenAndSuffixRanges() {
+        assertArrayEquals(new long[]{900, 1000}, range("bytes=900-", 1000));
+        assertArrayEquals(new long[]{800, 1000}, range("bytes=-200", 1000));
+        // A suffix longer than the file is the whole file
+        assertArrayEquals(new long[]{0, 1000}, range("bytes=-5000", 1000));
+    }
+
+    @Test
+    void unsatisfiableRangesAreEmpty() {
+        assertArrayEquals(new long[0], range("bytes=1000-", 1000));
+        assertArrayEquals(new long[0], range("bytes=500-400", 1000));
+        assertArrayEquals(new long[0], range("bytes=-0", 1000));
+    }
+
+    @Test
+    void malformedOrMultipleRangesSendTheWholeFile() {
+        assertNull(range("items=0-10", 1000));
+        assertNull(range("bytes=abc", 1000));
+        assertNull(range("bytes=a-b", 1000));
+        assertNull(range("bytes=0-10,20-30", 1000));
+    }
+
+    @Test
+    void staleIfRangeSendsTheWholeFile() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-99");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"other\"");
+        assertNull(ImageServingService.range(request, ETAG, 1000));
+
+        request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-99");
+        request.addHeader(HttpHeaders.IF_RANGE, ETAG);
+        assertArrayEquals(new long[]{0, 100}, ImageServingService.range(request, ETAG, 1000));
+    }
+
+    private static long[] range(String header, long length) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, header);
+        return ImageServingService.range(request, ETAG, length);
+    }
+}
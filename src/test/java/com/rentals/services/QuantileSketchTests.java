@@ -0,0 +1,76 @@
+package com.rentals.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTests {
+
+    private static final double ACCURACY = 0.01;
+
+    @Test
+    void quantilesAreWithinTheRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        for (int value = 1; value <= 10_000; value++) {
+            sketch.add(value);
+        }
+        assertEquals(10_000, sketch.count());
+        assertWithinAccuracy(1, sketch.quantile(0));
+        assertWithinAccuracy(5_000, sketch.quantile(0.5));
+        assertWithinAccuracy(9_000, sketch.quantile(0.9));
+        assertWithinAccuracy(9_900, sketch.quantile(0.99));
+        assertWithinAccuracy(10_000, sketch.quantile(1));
+    }
+
+    @Test
+    void removedValuesNoLongerCount() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        for (int value = 1; value <= 100; value++) {
+            sketch.add(value);
+            sketch.add(value * 1_000);
+        }
+        for (int value = 1; value <= 100; value++) {
+            sketch.remove(value * 1_000);
+        }
+        assertEquals(100, sketch.count());
+        assertWithinAccuracy(100, sketch.quantile(1));
+        assertWithinAccuracy(50, sketch.quantile(0.5));
+    }
+
+    @Test
+    void mergedSketchesMatchASingleOne() {
+        QuantileSketch all = new QuantileSketch(ACCURACY);
+        QuantileSketch low = new QuantileSketch(ACCURACY);
+        QuantileSketch high = new QuantileSketch(ACCURACY);
+        for (int value = 1; value <= 1_000; value++) {
+            all.add(value);
+            (value <= 500 ? low : high).add(value);
+        }
+        low.merge(high);
+        assertEquals(all.count(), low.count());
+        for (double quantile : new double[]{0, 0.25, 0.5, 0.75, 0.95, 1}) {
+            assertEquals(all.quantile(quantile), low.quantile(quantile));
+        }
+    }
+
+    @Test
+    void zeroAndNegativeValuesAreCountedAsZero() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        sketch.add(0);
+        sketch.add(-5);
+        sketch.add(10);
+        assertEquals(0, sketch.quantile(0));
+        assertEquals(0, sketch.quantile(0.5));
+        assertWithinAccuracy(10, sketch.quantile(1));
+    }
+
+    @Test
+    void emptySketchHasNoQuantiles() {
+        assertTrue(Double.isNaN(new QuantileSketch(ACCURACY).quantile(0.5)));
+    }
+
+    private static void assertWithinAccuracy(double expected, double actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * ACCURACY, "expected " + expected + " but was " + actual);
+    }
+}
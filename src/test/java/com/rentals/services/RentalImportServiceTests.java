@@ -0,0 +1,57 @@
+package com.rentals.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RentalImportServiceTests {
+
+    @Test
+    void readsPlainRecords() throws IOException {
+        BufferedReader reader = reader("name,surface,price\nFlat,45,800\n");
+        assertEquals(List.of("name", "surface", "price"), RentalImportService.readCsvRecord(reader));
+        assertEquals(List.of("Flat", "45", "800"), RentalImportService.readCsvRecord(reader));
+        assertNull(RentalImportService.readCsvRecord(reader));
+    }
+
+    @Test
+    void acceptsCrlfAndAMissingFinalLineBreak() throws IOException {
+        BufferedReader reader = reader("a,b\r\nc,d");
+        assertEquals(List.of("a", "b"), RentalImportService.readCsvRecord(reader));
+        assertEquals(List.of("c", "d"), RentalImportService.readCsvRecord(reader));
+        assertNull(RentalImportService.readCsvRecord(reader));
+    }
+
+    @Test
+    void quotedFieldsMayHoldCommasQuotesAndLineBreaks() throws IOException {
+        BufferedReader reader = reader("\"Flat, sea view\",\"The \"\"best\"\" one\",\"two\r\nlines\"\nnext,row,here\n");
+        assertEquals(List.of("Flat, sea view", "The \"best\" one", "two\r\nlines"), RentalImportService.readCsvRecord(reader));
+        assertEquals(List.of("next", "row", "here"), RentalImportService.readCsvRecord(reader));
+    }
+
+    @Test
+    void keepsEmptyFields() throws IOException {
+        BufferedReader reader = reader(",x,\n\n");
+        assertEquals(List.of("", "x", ""), RentalImportService.readCsvRecord(reader));
+        // A blank line is a single empty field, which the import skips
+        assertEquals(List.of(""), RentalImportService.readCsvRecord(reader));
+        assertNull(RentalImportService.readCsvRecord(reader));
+    }
+
+    @Test
+    void quoteClosingTheInput() throws IOException {
+        BufferedReader reader = reader("a,\"b\"");
+        assertEquals(List.of("a", "b"), RentalImportService.readCsvRecord(reader));
+        assertNull(RentalImportService.readCsvRecord(reader));
+    }
+
+    private static BufferedReader reader(String content) {
+        return new BufferedReader(new StringReader(content));
+    }
+}
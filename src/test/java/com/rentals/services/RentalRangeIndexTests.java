@@ -0,0 +1,119 @@
+package com.rentals.services;
+
+import com.rentals.dto.rentals.RentalFilterDto;
+import com.rentals.events.RentalChangedEvent;
+import com.rentals.events.RentalsImportedEvent;
+import com.rentals.model.Rental;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class RentalRangeIndexTests {
+
+    private RentalRangeIndex index;
+
+    @BeforeEach
+    void index() {
+        // The index is fed through events only: no repository needed
+        index = new RentalRangeIndex(null);
+        index.onRentalChanged(new RentalChangedEvent(rental(1, "500.00", "20"), true));
+        index.onRentalChanged(new RentalChangedEvent(rental(2, "800.50", "45.5"), true));
+        index.onRentalsImported(new RentalsImportedEvent(List.of(
+                rental(3, "1200", "80"),
+                rental(4, "800.50", "30"),
+                rental(5, "350.99", "15")
+        )));
+    }
+
+    @Test
+    void withoutBoundsReturnsEveryRental() {
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5}, all(new RentalFilterDto()));
+    }
+
+    @Test
+    void boundsAreInclusive() {
+        assertArrayEquals(new int[]{1, 2, 4}, all(filter("500", "800.50", null, null)));
+        assertArrayEquals(new int[]{2, 3, 4}, all(filter("800.50", null, null, null)));
+    }
+
+    @Test
+    void fractionalBoundsAreNotWidenedByRounding() {
+        assertArrayEquals(new int[]{3}, all(filter("800.501", null, null, null)));
+        assertArrayEquals(new int[]{1, 5}, all(filter(null, "800.499", null, null)));
+    }
+
+    @Test
+    void intersectsPriceAndSurface() {
+        assertArrayEquals(new int[]{2}, all(filter("500", "1000", "40", null)));
+        assertArrayEquals(new int[]{}, all(filter("1000", null, null, "50")));
+    }
+
+    @Test
+    void updatesMoveRentalsBetweenRanges() {
+        index.onRentalChanged(new RentalChangedEvent(rental(3, "400", "80"), false));
+        index.onRentalsImported(new RentalsImportedEvent(List.of(rental(5, "2000", "15"))));
+        assertArrayEquals(new int[]{1, 3}, all(filter("400", "500", null, null)));
+        assertArrayEquals(new int[]{5}, all(filter("1000", null, null, null)));
+    }
+
+    @Test
+    void outOfRangeBoundsAreClamped() {
+        assertArrayEquals(new int[]{}, all(filter("1e30", null, null, null)));
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5}, all(filter("-1e30", "1e30", null, "1e30")));
+    }
+
+    @Test
+    void pagesResumeAfterTheLastId() {
+        RentalFilterDto broad = filter(null, null, "10", null);
+        assertArrayEquals(new int[]{1, 2}, index.query(broad, null, 2));
+        assertArrayEquals(new int[]{3, 4}, index.query(broad, 2, 2));
+        assertArrayEquals(new int[]{5}, index.query(broad, 4, 2));
+        assertArrayEquals(new int[]{}, index.query(broad, 5, 2));
+        assertArrayEquals(new int[]{}, index.query(broad, Integer.MAX_VALUE, 2));
+    }
+
+    @Test
+    void selectiveFiltersArePagedToo() {
+        for (int id = 100; id < 1100; id++) {
+            index.onRentalChanged(new RentalChangedEvent(rental(id, "100", "10"), true));
+        }
+        // Two matches among a thousand rentals: collected from the sorted price column
+        RentalFilterDto selective = filter("800", "900", null, null);
+        assertArrayEquals(new int[]{2}, index.query(selective, null, 1));
+        assertArrayEquals(new int[]{4}, index.query(selective, 2, 1));
+        assertArrayEquals(new int[]{}, index.query(selective, 4, 1));
+        // Most rentals match: ids are walked in order
+        RentalFilterDto broad = filter(null, "200", null, null);
+        assertArrayEquals(new int[]{100, 101, 102}, index.query(broad, 5, 3));
+        assertArrayEquals(new int[]{1098, 1099}, index.query(broad, 1097, 3));
+    }
+
+    private int[] all(RentalFilterDto filter) {
+        return index.query(filter, null, Integer.MAX_VALUE);
+    }
+
+    private static RentalFilterDto filter(String minPrice, String maxPrice, String minSurface, String maxSurface) {
+        RentalFilterDto filter = new RentalFilterDto();
+        filter.setMinPrice(decimal(minPrice));
+        filter.setMaxPrice(decimal(maxPrice));
+        filter.setMinSurface(decimal(minSurface));
+        filter.setMaxSurface(decimal(maxSurface));
+        return filter;
+    }
+
+    private static BigDecimal decimal(String value) {
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    private static Rental rental(int id, String price, String surface) {
+        Rental rental = new Rental();
+        rental.setId(id);
+        rental.setPrice(new BigDecimal(price));
+        rental.setSurface(new BigDecimal(surface));
+        return rental;
+    }
+}
@@ -0,0 +1,76 @@
+package com.rentals.services;
+
+import com.rentals.events.RentalChangedEvent;
+import com.rentals.events.RentalsImportedEvent;
+import com.rentals.model.Rental;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RentalSearchServiceTests {
+
+    private RentalSearchService searchService;
+
+    @BeforeEach
+    void index() {
+        // The index is fed through events only: no rental service needed
+        searchService = new RentalSearchService(null);
+        searchService.onRentalsImported(new RentalsImportedEvent(List.of(
+                rental(1, "Sea view flat", "A small flat close to the beach."),
+                rental(2, "Mountain chalet", "A wooden chalet with a sea of pine trees around it."),
+                rental(3, "Château de la Loire", "A castle among the vineyards."),
+                rental(4, "City studio", "Studio in the city centre, close to the station and the beach bus.")
+        )));
+    }
+
+    @Test
+    void ranksNameMatchesAboveDescriptionMatches() {
+        assertEquals(List.of(1, 2), searchService.search("sea", 10));
+    }
+
+    @Test
+    void ranksDocumentsMatchingMoreTermsFirst() {
+        List<Integer> ids = searchService.search("beach flat", 10);
+        assertEquals(1, ids.get(0));
+        assertTrue(ids.contains(4));
+        assertEquals(2, ids.size());
+    }
+
+    @Test
+    void ignoresCaseAndAccents() {
+        assertEquals(List.of(3), searchService.search("CHATEAU", 10));
+        assertEquals(List.of(3), searchService.search("château", 10));
+    }
+
+    @Test
+    void returnsAtMostLimitResults() {
+        assertEquals(List.of(1), searchService.search("beach sea", 1));
+    }
+
+    @Test
+    void reindexesUpdatedRentals() {
+        searchService.onRentalChanged(new RentalChangedEvent(rental(1, "Garden house", "A house with a garden."), false));
+        assertEquals(List.of(2), searchService.search("sea", 10));
+        assertEquals(List.of(1), searchService.search("garden", 10));
+    }
+
+    @Test
+    void unknownOrEmptyQueriesMatchNothing() {
+        assertTrue(searchService.search("submarine", 10).isEmpty());
+        assertTrue(searchService.search("  ", 10).isEmpty());
+        // Single characters are not indexed
+        assertTrue(searchService.search("a", 10).isEmpty());
+    }
+
+    private static Rental rental(int id, String name, String description) {
+        Rental rental = new Rental();
+        rental.setId(id);
+        rental.setName(name);
+        rental.setDescription(description);
+        return rental;
+    }
+}
@@ -0,0 +1,216 @@
+package com.rentals.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentImageStoreTests {
+
+    // Header (22 bytes) + "a.jpg" (5 bytes) + 60 bytes of data
+    private static final int RECORD_BYTES = 22 + 5 + 60;
+
+    @TempDir
+    Path root;
+
+    private Path segments;
+    private SegmentImageStore store;
+
+    @BeforeEach
+    void open() throws IOException {
+        segments = root.resolve(".segments");
+        store = open(1 << 20);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void readsBackStoredImagesAfterRestart() throws IOException {
+        store.put("a.jpg", source(data('a', 60)));
+        store.put("b.jpg", source(data('b', 60)));
+
+        reopen(1 << 20);
+
+        assertArrayEquals(data('a', 60), read("a.jpg"));
+        assertArrayEquals(data('b', 60), read("b.jpg"));
+        ImageLocation location = store.locate("b.jpg");
+        assertEquals(RECORD_BYTES + 22 + 5, location.offset());
+        assertEquals(60, location.size());
+    }
+
+    @Test
+    void truncatesATornLastRecordOnRebuild() throws IOException {
+        store.put("a.jpg", source(data('a', 60)));
+        store.put("b.jpg", source(data('b', 60)));
+        store.close();
+
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // A crash in the middle of the second record
+            channel.truncate(RECORD_BYTES + 40);
+        }
+        store = open(1 << 20);
+
+        assertArrayEquals(data('a', 60), read("a.jpg"));
+        assertNull(store.locate("b.jpg"));
+        assertEquals(RECORD_BYTES, Files.size(segment));
+
+        // Appends resume right after the last intact record
+        store.put("c.jpg", source(data('c', 60)));
+        reopen(1 << 20);
+        assertArrayEquals(data('a', 60), read("a.jpg"));
+        assertArrayEquals(data('c', 60), read("c.jpg"));
+    }
+
+    @Test
+    void dropsALastRecordWithABadChecksum() throws IOException {
+        store.put("a.jpg", source(data('a', 60)));
+        store.put("b.jpg", source(data('b', 60)));
+        store.close();
+
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 0x01;
+        Files.write(segment, bytes);
+        store = open(1 << 20);
+
+        assertArrayEquals(data('a', 60), read("a.jpg"));
+        assertNull(store.locate("b.jpg"));
+    }
+
+    @Test
+    void putOfAnExistingNameReplacesItsContent() throws IOException {
+        store.put("a.jpg", source(data('a', 60)));
+        store.put("a.jpg", source(data('z', 60)));
+
+        assertArrayEquals(data('z', 60), read("a.jpg"));
+        assertEquals(1, store.stats().get("objects"));
+        assertEquals((long) RECORD_BYTES, store.stats().get("dead_bytes"));
+
+        // The last record of a name wins when the index is rebuilt
+        reopen(1 << 20);
+        assertArrayEquals(data('z', 60), read("a.jpg"));
+        assertEquals(1, store.stats().get("objects"));
+        assertEquals((long) RECORD_BYTES, store.stats().get("dead_bytes"));
+    }
+
+    @Test
+    void deletedImagesStayDeletedAfterRestart() throws IOException {
+        store.put("a.jpg", source(data('a', 60)));
+        assertTrue(store.delete("a.jpg"));
+        assertNull(store.locate("a.jpg"));
+
+        reopen(1 << 20);
+        assertNull(store.locate("a.jpg"));
+        assertFalse(store.delete("a.jpg"));
+    }
+
+    @Test
+    void compactionKeepsDeletionsOfRecordsInOlderSegments() throws IOException {
+        // Two records per segment
+        reopen(2 * RECORD_BYTES);
+        store.put("a.jpg", source(data('a', 60)));
+        store.put("b.jpg", source(data('b', 60)));
+        // Second segment: the deletion of a.jpg, then an image deleted right away
+        store.delete("a.jpg");
+        store.put("c.jpg", source(data('c', 60)));
+        store.delete("c.jpg");
+        // Third segment, the active one
+        store.put("d.jpg", source(data('d', 60)));
+        assertEquals(3, store.stats().get("segments"));
+
+        store.compact();
+        assertEquals(1L, store.stats().get("compactions"));
+        store.close();
+
+        // The retired segment is deleted after a delay: do it now, as a later restart would find it
+        Path retired = segments.resolve("segment-0000000002.dat");
+        assertTrue(Files.exists(retired));
+        Files.delete(retired);
+        store = open(2 * RECORD_BYTES);
+
+        // The deletion of a.jpg was carried over to a newer segment, so its record in the first one stays dead
+        assertNull(store.locate("a.jpg"));
+        assertNull(store.locate("c.jpg"));
+        assertArrayEquals(data('b', 60), read("b.jpg"));
+        assertArrayEquals(data('d', 60), read("d.jpg"));
+        List<String> names = new ArrayList<>();
+        store.forEach(entry -> names.add(entry.name()));
+        assertEquals(List.of("b.jpg", "d.jpg"), names.stream().sorted().toList());
+    }
+
+    @Test
+    void largeImagesGoToTheOtherStore() throws IOException {
+        reopen(1 << 20, 100);
+        store.put("large.jpg", source(data('l', 200)));
+
+        ImageLocation location = store.locate("large.jpg");
+        assertNotNull(location);
+        assertEquals(0, location.offset());
+        assertFalse(location.file().startsWith(segments));
+        assertArrayEquals(data('l', 200), read("large.jpg"));
+        assertEquals(0, store.stats().get("objects"));
+    }
+
+    private SegmentImageStore open(int segmentBytes) throws IOException {
+        return open(segmentBytes, 1024);
+    }
+
+    private SegmentImageStore open(int segmentBytes, int maxObjectBytes) throws IOException {
+        ImageStore largeObjects = new FilesystemImageStore(new ImagePathResolver(root.resolve("large").toString()));
+        return new SegmentImageStore(segments, largeObjects, segmentBytes, maxObjectBytes, 0.9, 0);
+    }
+
+    private void reopen(int segmentBytes) throws IOException {
+        store.close();
+        store = open(segmentBytes);
+    }
+
+    private void reopen(int segmentBytes, int maxObjectBytes) throws IOException {
+        store.close();
+        store = open(segmentBytes, maxObjectBytes);
+    }
+
+    private Path source(byte[] content) throws IOException {
+        return Files.write(Files.createTempFile(root, "upload", ".tmp"), content);
+    }
+
+    private byte[] read(String name) throws IOException {
+        try (InputStream input = store.openStream(name)) {
+            return input.readAllBytes();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(segments)) {
+            List<Path> list = files.toList();
+            assertEquals(1, list.size());
+            return list.get(0);
+        }
+    }
+
+    private static byte[] data(char fill, int length) {
+        return String.valueOf(fill).repeat(length).getBytes(StandardCharsets.US_ASCII);
+    }
+}